@@ -0,0 +1,179 @@
+package com.lidroid.xutils.benchmark;
+
+import com.lidroid.xutils.task.AgingPolicy;
+import com.lidroid.xutils.task.Priority;
+import com.lidroid.xutils.task.PriorityObject;
+import com.lidroid.xutils.task.PriorityObjectBlockingQueue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares PriorityObjectBlockingQueue (priority lanes) with LegacyPriorityObjectBlockingQueue
+ * (sorted linked list), off device:
+ * <pre>
+ * cd library/src/com/lidroid/xutils
+ * javac -encoding UTF-8 -d /tmp/benchmark task/Priority.java task/PriorityObject.java task/PriorityObjectBlockingQueue.java \
+ *     task/QueuePolicy.java task/AgingPolicy.java util/LatencyHistogram.java ../../../../../benchmark/src/com/lidroid/xutils/benchmark/*.java
+ * java -cp /tmp/benchmark com.lidroid.xutils.benchmark.QueueBenchmark
+ * </pre>
+ * Every case is run WARMUP_RUNS times, then the median of MEASURED_RUNS is printed in ns per element
+ * (one offer and one poll).
+ * <p/>
+ * Author: wyouflf
+ * Date: 14-5-23
+ * Time: 上午11:25
+ */
+public class QueueBenchmark {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 7;
+    private static final int OPERATIONS = 200000;
+    private static final int PRODUCERS = 4;
+    private static final int CONSUMERS = 2;
+
+    private static final Priority[] PRIORITIES = Priority.values();
+    private static final Runnable EMPTY = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    // PriorityRunnable would need the android logging of TaskTracer
+    private static final class Element extends PriorityObject<Runnable> {
+        Element(Priority priority, Runnable obj) {
+            super(priority, obj);
+        }
+    }
+
+    private interface QueueFactory {
+        BlockingQueue<Element> create();
+    }
+
+    public static void main(String[] args) throws Exception {
+        QueueFactory legacy = new QueueFactory() {
+            @Override
+            public BlockingQueue<Element> create() {
+                return new LegacyPriorityObjectBlockingQueue<Element>();
+            }
+        };
+        QueueFactory lanes = new QueueFactory() {
+            @Override
+            public BlockingQueue<Element> create() {
+                return new PriorityObjectBlockingQueue<Element>();
+            }
+        };
+        QueueFactory lanesWithPolicy = new QueueFactory() {
+            @Override
+            public BlockingQueue<Element> create() {
+                PriorityObjectBlockingQueue<Element> queue = new PriorityObjectBlockingQueue<Element>();
+                queue.setPolicy(new AgingPolicy(1000));
+                return queue;
+            }
+        };
+
+        System.out.println("offer + poll with N waiting elements, ns/element");
+        for (int depth : new int[]{16, 256, 4096}) {
+            System.out.println("  N=" + depth
+                    + "  legacy: " + steadyState(legacy, depth)
+                    + "  lanes: " + steadyState(lanes, depth)
+                    + "  lanes+AgingPolicy: " + steadyState(lanesWithPolicy, depth));
+        }
+
+        System.out.println(PRODUCERS + " producers (put) / " + CONSUMERS + " consumers (take), ns/element");
+        System.out.println("  legacy: " + producersConsumers(legacy)
+                + "  lanes: " + producersConsumers(lanes)
+                + "  lanes+AgingPolicy: " + producersConsumers(lanesWithPolicy));
+    }
+
+    private static Element[] newElements(int count) {
+        Random random = new Random(42);
+        Element[] elements = new Element[count];
+        for (int i = 0; i < count; i++) {
+            elements[i] = new Element(PRIORITIES[random.nextInt(PRIORITIES.length)], EMPTY);
+        }
+        return elements;
+    }
+
+    private static long steadyState(QueueFactory factory, int depth) {
+        Element[] elements = newElements(OPERATIONS);
+        long[] results = new long[MEASURED_RUNS];
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            BlockingQueue<Element> queue = factory.create();
+            for (int i = 0; i < depth; i++) {
+                queue.offer(elements[i]);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                queue.offer(elements[i]);
+                if (queue.poll() == null) throw new IllegalStateException();
+            }
+            long elapsed = System.nanoTime() - start;
+            if (run >= WARMUP_RUNS) {
+                results[run - WARMUP_RUNS] = elapsed / OPERATIONS;
+            }
+        }
+        return median(results);
+    }
+
+    private static long producersConsumers(QueueFactory factory) throws InterruptedException {
+        final Element[] elements = newElements(OPERATIONS);
+        long[] results = new long[MEASURED_RUNS];
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            final BlockingQueue<Element> queue = factory.create();
+            final CountDownLatch startSignal = new CountDownLatch(1);
+            final CountDownLatch doneSignal = new CountDownLatch(PRODUCERS + CONSUMERS);
+            final int perProducer = OPERATIONS / PRODUCERS;
+            final int perConsumer = perProducer * PRODUCERS / CONSUMERS;
+            for (int p = 0; p < PRODUCERS; p++) {
+                final int offset = p * perProducer;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            startSignal.await();
+                            for (int i = 0; i < perProducer; i++) {
+                                queue.put(elements[offset + i]);
+                            }
+                        } catch (InterruptedException ignored) {
+                        } finally {
+                            doneSignal.countDown();
+                        }
+                    }
+                }).start();
+            }
+            for (int c = 0; c < CONSUMERS; c++) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            startSignal.await();
+                            for (int i = 0; i < perConsumer; i++) {
+                                queue.take();
+                            }
+                        } catch (InterruptedException ignored) {
+                        } finally {
+                            doneSignal.countDown();
+                        }
+                    }
+                }).start();
+            }
+            long start = System.nanoTime();
+            startSignal.countDown();
+            doneSignal.await();
+            long elapsed = System.nanoTime() - start;
+            if (run >= WARMUP_RUNS) {
+                results[run - WARMUP_RUNS] = elapsed / (perProducer * PRODUCERS);
+            }
+        }
+        return median(results);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -35,17 +35,20 @@ import com.lidroid.xutils.bitmap.core.BitmapSize;
 import com.lidroid.xutils.bitmap.download.Downloader;
 import com.lidroid.xutils.cache.FileNameGenerator;
 import com.lidroid.xutils.task.PriorityAsyncTask;
-import com.lidroid.xutils.task.PriorityExecutor;
+import com.lidroid.xutils.task.QuotaExecutor;
 import com.lidroid.xutils.task.TaskHandler;
 
 import java.io.File;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 
 public class BitmapUtils implements TaskHandler {
 
-    private boolean pauseTask = false;
-    private boolean cancelAllTask = false;
-    private final Object pauseTaskLock = new Object();
+    private volatile boolean pauseTask = false;
+    private volatile boolean cancelAllTask = false;
+    private boolean serveCacheWhilePaused = false;
+    // 暂停期间的加载任务，不占用线程，resume时再执行
+    private final ArrayList<BitmapLoadTask<?>> parkedTasks = new ArrayList<BitmapLoadTask<?>>();
 
     private Context context;
     private BitmapGlobalConfig globalConfig;
@@ -180,6 +183,27 @@ public class BitmapUtils implements TaskHandler {
         return this;
     }
 
+    /**
+     * A load task still queued after the timeout is dropped, a downloading one is cancelled.
+     *
+     * @param taskTimeout milliseconds from display, 0 for none.
+     */
+    public BitmapUtils configTaskTimeout(long taskTimeout) {
+        globalConfig.setTaskTimeout(taskTimeout);
+        return this;
+    }
+
+    /**
+     * While paused the load tasks are parked without holding a thread,
+     * the images in the disk cache may still be loaded.
+     *
+     * @param serveCacheWhilePaused false by default, only the memory cache is served while paused.
+     */
+    public BitmapUtils configServeCacheWhilePaused(boolean serveCacheWhilePaused) {
+        this.serveCacheWhilePaused = serveCacheWhilePaused;
+        return this;
+    }
+
     public BitmapUtils configThreadPoolSize(int threadPoolSize) {
         globalConfig.setThreadPoolSize(threadPoolSize);
         return this;
@@ -270,19 +294,43 @@ public class BitmapUtils implements TaskHandler {
             final BitmapLoadTask<T> loadTask = new BitmapLoadTask<T>(container, uri,
                     displayConfig, callBack);//新建下载任务
 
-            // get executor  获得加载执行器
-            PriorityExecutor executor = globalConfig.getBitmapLoadExecutor();
-            File diskCacheFile = this.getBitmapFileFromDiskCache(uri);//从磁盘中获取缓存
-            boolean diskCacheExist = diskCacheFile != null && diskCacheFile.exists();
-            if (diskCacheExist && executor.isBusy()) {//文件存在，并且Bitmap加载线程池忙
-                executor = globalConfig.getDiskCacheExecutor();//获取磁盘缓存处理线程池执行器
-            }
             // set loading image
             Drawable loadingDrawable = displayConfig.getLoadingDrawable();//设置正在加载显示的图片
             callBack.setDrawable(container, new AsyncDrawable<T>(loadingDrawable, loadTask));
             loadTask.setPriority(displayConfig.getPriority());
-            loadTask.executeOnExecutor(executor);
+
+            File diskCacheFile = this.getBitmapFileFromDiskCache(uri);//从磁盘中获取缓存
+            boolean diskCacheExist = diskCacheFile != null && diskCacheFile.exists();
+            if (!parkIfPaused(loadTask, diskCacheExist)) {
+                executeLoadTask(loadTask, diskCacheExist);
+            }
+        }
+    }
+
+    private void executeLoadTask(BitmapLoadTask<?> loadTask, boolean diskCacheExist) {
+        // get executor  获得加载执行器
+        QuotaExecutor executor = globalConfig.getBitmapLoadExecutor();
+        if (diskCacheExist && executor.isBusy()) {//文件存在，并且Bitmap加载线程池忙
+            executor = globalConfig.getDiskCacheExecutor();//获取磁盘缓存处理线程池执行器
+        }
+        loadTask.setTimeout(globalConfig.getTaskTimeout());
+        loadTask.executeOnExecutor(executor);
+    }
+
+    /**
+     * 暂停时保存任务，resume时执行
+     *
+     * @return true if the task has been parked.
+     */
+    private boolean parkIfPaused(BitmapLoadTask<?> loadTask, boolean diskCacheExist) {
+        if (diskCacheExist && serveCacheWhilePaused) return false;
+        synchronized (parkedTasks) {
+            if (pauseTask && !cancelAllTask) {
+                parkedTasks.add(loadTask);
+                return true;
+            }
         }
+        return false;
     }
 
     /////////////////////////////////////////////// cache
@@ -357,18 +405,26 @@ public class BitmapUtils implements TaskHandler {
 
     @Override
     public void resume() {
-        pauseTask = false;
-        synchronized (pauseTaskLock) {
-            pauseTaskLock.notifyAll();
+        ArrayList<BitmapLoadTask<?>> tasks;
+        synchronized (parkedTasks) {
+            pauseTask = false;
+            tasks = new ArrayList<BitmapLoadTask<?>>(parkedTasks);
+            parkedTasks.clear();
+        }
+        for (BitmapLoadTask<?> task : tasks) {
+            if (task.getTargetContainer() != null) {//容器已加载其他图片的任务丢弃
+                File diskCacheFile = this.getBitmapFileFromDiskCache(task.uri);
+                executeLoadTask(task, diskCacheFile != null && diskCacheFile.exists());
+            }
         }
     }
 
     @Override
     public void cancel() {
-        pauseTask = true;
-        cancelAllTask = true;
-        synchronized (pauseTaskLock) {
-            pauseTaskLock.notifyAll();
+        synchronized (parkedTasks) {
+            pauseTask = true;
+            cancelAllTask = true;
+            parkedTasks.clear();
         }
     }
 
@@ -425,6 +481,7 @@ public class BitmapUtils implements TaskHandler {
         private final BitmapDisplayConfig displayConfig;
 
         private BitmapLoadFrom from = BitmapLoadFrom.DISK_CACHE;
+        private volatile boolean parked = false;
 
         public BitmapLoadTask(T container, String uri, BitmapDisplayConfig config,
                               BitmapLoadCallBack<T> callBack) {
@@ -441,24 +498,19 @@ public class BitmapUtils implements TaskHandler {
         /**
          * BitmapLoadTask.java
          * 后台线程执行
-         * 1.死循环判断暂定状态，并阻塞线程
+         * 1.暂停时不阻塞线程，返回后由onPostExecute重新保存任务
          * 2.发布状态，从磁盘缓存中获取Bitmap
          * 3.磁盘缓存中不存在去下载
          */
 
         @Override
         protected Bitmap doInBackground(Object... params) {
-            synchronized (pauseTaskLock) {
-                while (pauseTask && !this.isCancelled()) {
-                    try {
-                        pauseTaskLock.wait();//线程阻塞
-                        if (cancelAllTask) {
-                            return null;
-                        }
-                    } catch (Throwable e) {
-
-                    }
-                }
+            if (cancelAllTask) {
+                return null;
+            }
+            if (pauseTask && !serveCacheWhilePaused) {
+                parked = true;
+                return null;
             }
 
             Bitmap bitmap = null;
@@ -468,6 +520,10 @@ public class BitmapUtils implements TaskHandler {
                 this.publishProgress(PROGRESS_LOAD_STARTED);
                 bitmap = globalConfig.getBitmapCache().getBitmapFromDiskCache(uri, displayConfig);
             }
+            if (bitmap == null && pauseTask) {
+                parked = true;
+                return null;
+            }
             // download image
             if (bitmap == null && !this.isCancelled() && this.getTargetContainer() != null)
             {//磁盘缓存不存在,去下载
@@ -479,11 +535,14 @@ public class BitmapUtils implements TaskHandler {
         }
 
         public void updateProgress(long total, long current) {
-            this.publishProgress(PROGRESS_LOADING, total, current);
+            if (isTimedOut()) {
+                this.cancel(true);//下载超时，Downloader检查到取消后停止
+                return;
+            }
+            this.publishLoading(total, current);
         }
 
         private static final int PROGRESS_LOAD_STARTED = 0;
-        private static final int PROGRESS_LOADING = 1;
 
         @Override
         protected void onProgressUpdate(Object... values) {
@@ -496,20 +555,29 @@ public class BitmapUtils implements TaskHandler {
                 case PROGRESS_LOAD_STARTED:
                     callBack.onLoadStarted(container, uri, displayConfig);
                     break;
-                case PROGRESS_LOADING:
-                    if (values.length != 3) return;
-                    callBack.onLoading(container, uri, displayConfig, (Long) values[1], (Long)
-                            values[2]);
-                    break;
                 default:
                     break;
             }
         }
 
+        @Override
+        protected void onLoadingUpdate(long total, long current) {
+            final T container = this.getTargetContainer();
+            if (container != null) {
+                callBack.onLoading(container, uri, displayConfig, total, current);
+            }
+        }
+
         //Bitmap加载成功回调
         @Override
         protected void onPostExecute(Bitmap bitmap) {
             final T container = this.getTargetContainer();
+            if (parked) {//执行时已暂停，用新任务重新保存
+                if (container != null) {
+                    reloadAfterPause(container);
+                }
+                return;
+            }
             if (container != null) {
                 if (bitmap != null) {
                     callBack.onLoadCompleted(container, this.uri, bitmap, displayConfig, from);
@@ -520,10 +588,15 @@ public class BitmapUtils implements TaskHandler {
             }
         }
 
-        @Override
-        protected void onCancelled(Bitmap bitmap) {
-            synchronized (pauseTaskLock) {
-                pauseTaskLock.notifyAll();
+        // a task runs only once, the container is bound to a copy which waits for resume.
+        private void reloadAfterPause(T container) {
+            final BitmapLoadTask<T> loadTask = new BitmapLoadTask<T>(container, uri,
+                    displayConfig, callBack);
+            callBack.setDrawable(container, new AsyncDrawable<T>(displayConfig.getLoadingDrawable(), loadTask));
+            loadTask.setPriority(this.getPriority());
+            if (!parkIfPaused(loadTask, false)) {
+                File diskCacheFile = getBitmapFileFromDiskCache(uri);
+                executeLoadTask(loadTask, diskCacheFile != null && diskCacheFile.exists());
             }
         }
 
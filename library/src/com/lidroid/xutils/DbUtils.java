@@ -20,21 +20,24 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.text.TextUtils;
 
+import com.lidroid.xutils.cache.LruMemoryCache;
 import com.lidroid.xutils.db.sqlite.*;
+import com.lidroid.xutils.db.table.Column;
 import com.lidroid.xutils.db.table.DbModel;
+import com.lidroid.xutils.db.table.DbModelSet;
 import com.lidroid.xutils.db.table.Id;
 import com.lidroid.xutils.db.table.Table;
 import com.lidroid.xutils.db.table.TableUtils;
 import com.lidroid.xutils.exception.DbException;
+import com.lidroid.xutils.task.TaskFuture;
 import com.lidroid.xutils.util.IOUtils;
 import com.lidroid.xutils.util.LogUtils;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class DbUtils {
@@ -47,9 +50,12 @@ public class DbUtils {
     private static HashMap<String, DbUtils> daoMap = new HashMap<String, DbUtils>();
 
     private SQLiteDatabase database;
+    private ReadConnectionPool readConnectionPool; // null if WAL is not enabled or pooled by the framework
     private DaoConfig daoConfig;
     private boolean debug = false;
     private boolean allowTransaction = false;
+    private boolean explainQueryPlan = false;
+    private volatile WriteQueue writeQueue;
 
     private DbUtils(DaoConfig config) {
         if (config == null) {
@@ -57,6 +63,10 @@ public class DbUtils {
         }
         this.database = createDatabase(config);
         this.daoConfig = config;
+        if (config.isWalEnabled() && ReadConnectionPool.enableWriteAheadLogging(database)
+                && !ReadConnectionPool.isFrameworkPoolConcurrent()) {
+            this.readConnectionPool = ReadConnectionPool.open(database.getPath(), config.getReadConnectionPoolSize());
+        }
     }
 
     /**
@@ -144,6 +154,36 @@ public class DbUtils {
         return this;
     }
 
+    /**
+     * Debug: log the query plan of every sql of findFirst/findAll once, with the missing indexes of the full scans.
+     */
+    public DbUtils configExplainQueryPlan(boolean explainQueryPlan) {
+        this.explainQueryPlan = explainQueryPlan;
+        return this;
+    }
+
+    /**
+     * The async writes (saveAsync, updateAsync...) are committed in a transaction for every
+     * maxBatchSize writes or maxDelayMillis, 100 writes or 50ms by default.
+     */
+    public synchronized DbUtils configWriteQueue(int maxBatchSize, long maxDelayMillis) {
+        if (writeQueue != null) {
+            writeQueue.close();
+        }
+        writeQueue = new WriteQueue(database, writeLock, maxBatchSize, maxDelayMillis);
+        return this;
+    }
+
+    private synchronized WriteQueue getWriteQueue() {
+        if (writeQueue == null) {
+            writeQueue = new WriteQueue(database, writeLock, DEFAULT_WRITE_BATCH_SIZE, DEFAULT_WRITE_DELAY_MILLIS);
+        }
+        return writeQueue;
+    }
+
+    private static final int DEFAULT_WRITE_BATCH_SIZE = 100;
+    private static final long DEFAULT_WRITE_DELAY_MILLIS = 50;
+
     public SQLiteDatabase getDatabase() {
         return database;
     }
@@ -188,7 +228,7 @@ public class DbUtils {
             beginTransaction();
 
             createTableIfNotExist(entity.getClass());
-            execNonQuery(SqlInfoBuilder.buildReplaceSqlInfo(this, entity));
+            execEntityInsert(entity, true);
 
             setTransactionSuccessful();
         } finally {
@@ -203,7 +243,7 @@ public class DbUtils {
 
             createTableIfNotExist(entities.get(0).getClass());
             for (Object entity : entities) {
-                execNonQuery(SqlInfoBuilder.buildReplaceSqlInfo(this, entity));
+                execEntityInsert(entity, true);
             }
 
             setTransactionSuccessful();
@@ -219,7 +259,7 @@ public class DbUtils {
         try {
             beginTransaction();
             createTableIfNotExist(entity.getClass());//检测表是否存在,不存在就新建
-            execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(this, entity));
+            execEntityInsert(entity, false);
             setTransactionSuccessful();
         } finally {
             endTransaction();
@@ -233,7 +273,7 @@ public class DbUtils {
 
             createTableIfNotExist(entities.get(0).getClass());
             for (Object entity : entities) {
-                execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(this, entity));
+                execEntityInsert(entity, false);
             }
 
             setTransactionSuccessful();
@@ -339,7 +379,7 @@ public class DbUtils {
         try {
             beginTransaction();
 
-            execNonQuery(SqlInfoBuilder.buildUpdateSqlInfo(this, entity, updateColumnNames));
+            execEntityUpdate(entity, updateColumnNames);
 
             setTransactionSuccessful();
         } finally {
@@ -367,7 +407,7 @@ public class DbUtils {
             beginTransaction();
 
             for (Object entity : entities) {
-                execNonQuery(SqlInfoBuilder.buildUpdateSqlInfo(this, entity, updateColumnNames));
+                execEntityUpdate(entity, updateColumnNames);
             }
 
             setTransactionSuccessful();
@@ -392,6 +432,73 @@ public class DbUtils {
         }
     }
 
+    //********************************************* async writes *******************************************************
+    // 异步写入：多个线程的写入合并到一个事务中提交，future在事务提交后完成。
+    // 同一个线程的查询和同步写入会先提交该线程在队列中的写入，其他线程的写入不会阻塞它。
+
+    public TaskFuture<Void> saveAsync(final Object entity) {
+        return getWriteQueue().enqueue(new WriteQueue.Write() {
+            @Override
+            public void execute() throws DbException {
+                createTableIfNotExist(entity.getClass());
+                execEntityInsert(entity, false);
+            }
+        });
+    }
+
+    public TaskFuture<Void> saveOrUpdateAsync(final Object entity) {
+        return getWriteQueue().enqueue(new WriteQueue.Write() {
+            @Override
+            public void execute() throws DbException {
+                createTableIfNotExist(entity.getClass());
+                saveOrUpdateWithoutTransaction(entity);
+            }
+        });
+    }
+
+    public TaskFuture<Void> replaceAsync(final Object entity) {
+        return getWriteQueue().enqueue(new WriteQueue.Write() {
+            @Override
+            public void execute() throws DbException {
+                createTableIfNotExist(entity.getClass());
+                execEntityInsert(entity, true);
+            }
+        });
+    }
+
+    public TaskFuture<Void> updateAsync(final Object entity, final String... updateColumnNames) {
+        return getWriteQueue().enqueue(new WriteQueue.Write() {
+            @Override
+            public void execute() throws DbException {
+                if (!tableIsExist(entity.getClass())) return;
+                execEntityUpdate(entity, updateColumnNames);
+            }
+        });
+    }
+
+    public TaskFuture<Void> deleteAsync(final Object entity) {
+        return getWriteQueue().enqueue(new WriteQueue.Write() {
+            @Override
+            public void execute() throws DbException {
+                if (!tableIsExist(entity.getClass())) return;
+                execNonQuery(SqlInfoBuilder.buildDeleteSqlInfo(DbUtils.this, entity));
+            }
+        });
+    }
+
+    /**
+     * Commit the queued async writes and wait for them.
+     */
+    public void flushWriteQueue() throws DbException {
+        WriteQueue queue;
+        synchronized (this) {
+            queue = writeQueue;
+        }
+        if (queue != null) {
+            queue.flush();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T findById(Class<T> entityType, Object idValue) throws DbException {
         if (!tableIsExist(entityType)) return null;
@@ -399,57 +506,66 @@ public class DbUtils {
         Table table = Table.get(this, entityType);
         Selector selector = Selector.from(entityType).where(table.id.getColumnName(), "=", idValue);
 
-        String sql = selector.limit(1).toString();
-        long seq = CursorUtils.FindCacheSequence.getSeq();
-        findTempCache.setSeq(seq);
-        Object obj = findTempCache.get(sql);
-        if (obj != null) {
-            return (T) obj;
-        }
+        SqlInfo sqlInfo = selector.limit(1).toSqlInfo();
+        checkQueryPlan(selector, sqlInfo);
+        FindSession session = FindSession.begin();
+        try {
+            Object obj = session.getResult(sqlInfo);
+            if (obj != null) {
+                return (T) obj;
+            }
 
-        Cursor cursor = execQuery(sql);
-        if (cursor != null) {
-            try {
-                if (cursor.moveToNext()) {
-                    T entity = (T) CursorUtils.getEntity(this, cursor, entityType, seq);
-                    findTempCache.put(sql, entity);
-                    return entity;
+            Cursor cursor = execQuery(sqlInfo);
+            if (cursor != null) {
+                try {
+                    if (cursor.moveToNext()) {
+                        T entity = (T) CursorUtils.getEntity(this, cursor, entityType);
+                        session.putResult(sqlInfo, entity);
+                        return entity;
+                    }
+                } catch (Throwable e) {
+                    throw new DbException(e);
+                } finally {
+                    IOUtils.closeQuietly(cursor);
                 }
-            } catch (Throwable e) {
-                throw new DbException(e);
-            } finally {
-                IOUtils.closeQuietly(cursor);
             }
+            return null;
+        } finally {
+            session.end();
         }
-        return null;
     }
 
     @SuppressWarnings("unchecked")
     public <T> T findFirst(Selector selector) throws DbException {
         if (!tableIsExist(selector.getEntityType())) return null;
 
-        String sql = selector.limit(1).toString();
-        long seq = CursorUtils.FindCacheSequence.getSeq();
-        findTempCache.setSeq(seq);
-        Object obj = findTempCache.get(sql);
-        if (obj != null) {
-            return (T) obj;
-        }
-        Cursor cursor = execQuery(sql);
-        if (cursor != null) {
-            try {
-                if (cursor.moveToNext()) {
-                    T entity = (T) CursorUtils.getEntity(this, cursor, selector.getEntityType(), seq);
-                    findTempCache.put(sql, entity);
-                    return entity;
+        SqlInfo sqlInfo = selector.limit(1).toSqlInfo();
+        checkQueryPlan(selector, sqlInfo);
+        FindSession session = FindSession.begin();
+        try {
+            Object obj = session.getResult(sqlInfo);
+            if (obj != null) {
+                return (T) obj;
+            }
+
+            Cursor cursor = execQuery(sqlInfo);
+            if (cursor != null) {
+                try {
+                    if (cursor.moveToNext()) {
+                        T entity = (T) CursorUtils.getEntity(this, cursor, selector.getEntityType());
+                        session.putResult(sqlInfo, entity);
+                        return entity;
+                    }
+                } catch (Throwable e) {
+                    throw new DbException(e);
+                } finally {
+                    IOUtils.closeQuietly(cursor);
                 }
-            } catch (Throwable e) {
-                throw new DbException(e);
-            } finally {
-                IOUtils.closeQuietly(cursor);
             }
+            return null;
+        } finally {
+            session.end();
         }
-        return null;
     }
 
     public <T> T findFirst(Class<T> entityType) throws DbException {
@@ -460,37 +576,70 @@ public class DbUtils {
     public <T> List<T> findAll(Selector selector) throws DbException {
         if (!tableIsExist(selector.getEntityType())) return null;
 
-        String sql = selector.toString();//构造选择语句
-        long seq = CursorUtils.FindCacheSequence.getSeq();
-        findTempCache.setSeq(seq);
-        Object obj = findTempCache.get(sql);
-        if (obj != null) {//存在缓存
-            return (List<T>) obj;
-        }
+        SqlInfo sqlInfo = selector.toSqlInfo();//构造选择语句
+        checkQueryPlan(selector, sqlInfo);
+        List<Column> relationColumns = RelationLoader.getRelationColumns(this, selector);
+        FindSession session = FindSession.begin();
+        session.deferRelations(relationColumns);
+        try {
+            Object obj = session.getResult(sqlInfo);
+            if (obj != null) {//同一次查询中已查过
+                return (List<T>) obj;
+            }
 
-        List<T> result = new ArrayList<T>();
+            List<T> result = new ArrayList<T>();
 
-        Cursor cursor = execQuery(sql);//不存在缓存去执行查询吧
-        if (cursor != null) {
-            try {
-                while (cursor.moveToNext()) {//存储
-                    T entity = (T) CursorUtils.getEntity(this, cursor, selector.getEntityType(), seq);//////////
-                    result.add(entity);
+            Cursor cursor = execQuery(sqlInfo);
+            if (cursor != null) {
+                try {
+                    while (cursor.moveToNext()) {//存储
+                        T entity = (T) CursorUtils.getEntity(this, cursor, selector.getEntityType());
+                        result.add(entity);
+                    }
+                } catch (Throwable e) {
+                    throw new DbException(e);
+                } finally {
+                    IOUtils.closeQuietly(cursor);
                 }
-                findTempCache.put(sql, result);
-            } catch (Throwable e) {
-                throw new DbException(e);
-            } finally {
-                IOUtils.closeQuietly(cursor);
+                if (!relationColumns.isEmpty()) {// Selector.with(...)
+                    RelationLoader.loadDeferredRelations(this, session);
+                }
+                session.putResult(sqlInfo, result);
             }
+            return result;
+        } finally {
+            session.undeferRelations(relationColumns);
+            session.end();
         }
-        return result;
     }
 
     public <T> List<T> findAll(Class<T> entityType) throws DbException {
         return findAll(Selector.from(entityType));
     }
 
+    /**
+     * Read the entities one by one instead of loading all of them, close the iterator if not iterated to the end.
+     */
+    public <T> EntityIterator<T> iterate(Selector selector) throws DbException {
+        return new EntityIterator<T>(this, selector, 0, false);
+    }
+
+    /**
+     * @param pageSize the rows of a query (LIMIT/OFFSET), the cursor holds a page at most.
+     */
+    public <T> EntityIterator<T> iterate(Selector selector, int pageSize) throws DbException {
+        return new EntityIterator<T>(this, selector, pageSize, false);
+    }
+
+    /**
+     * The pages are queried by "id > last id ORDER BY id", the selector may not have an orderBy.
+     *
+     * @param pageSize the rows of a query.
+     */
+    public <T> EntityIterator<T> iterateById(Selector selector, int pageSize) throws DbException {
+        return new EntityIterator<T>(this, selector, pageSize, true);
+    }
+
     public DbModel findDbModelFirst(SqlInfo sqlInfo) throws DbException {
         Cursor cursor = execQuery(sqlInfo);
         if (cursor != null) {
@@ -510,7 +659,7 @@ public class DbUtils {
     public DbModel findDbModelFirst(DbModelSelector selector) throws DbException {
         if (!tableIsExist(selector.getEntityType())) return null;
 
-        Cursor cursor = execQuery(selector.limit(1).toString());
+        Cursor cursor = execQuery(selector.limit(1).toSqlInfo());
         if (cursor != null) {
             try {
                 if (cursor.moveToNext()) {
@@ -548,7 +697,7 @@ public class DbUtils {
 
         List<DbModel> dbModelList = new ArrayList<DbModel>();
 
-        Cursor cursor = execQuery(selector.toString());
+        Cursor cursor = execQuery(selector.toSqlInfo());
         if (cursor != null) {
             try {
                 while (cursor.moveToNext()) {
@@ -563,13 +712,79 @@ public class DbUtils {
         return dbModelList;
     }
 
+    /**
+     * The rows in their types (long/double/string/blob by column) instead of a DbModel of strings for every row.
+     */
+    public DbModelSet findDbModelSet(SqlInfo sqlInfo) throws DbException {
+        Cursor cursor = execQuery(sqlInfo);
+        if (cursor != null) {
+            try {
+                return CursorUtils.getDbModelSet(cursor);
+            } catch (Throwable e) {
+                throw new DbException(e);
+            } finally {
+                IOUtils.closeQuietly(cursor);
+            }
+        }
+        return null;
+    }
+
+    public DbModelSet findDbModelSet(DbModelSelector selector) throws DbException {
+        if (!tableIsExist(selector.getEntityType())) return null;
+
+        Cursor cursor = execQuery(selector.toSqlInfo());
+        if (cursor != null) {
+            try {
+                return CursorUtils.getDbModelSet(cursor);
+            } catch (Throwable e) {
+                throw new DbException(e);
+            } finally {
+                IOUtils.closeQuietly(cursor);
+            }
+        }
+        return null;
+    }
+
+    public QueryPlan explainQueryPlan(Selector selector) throws DbException {
+        return QueryPlan.explain(this, selector);
+    }
+
+    /**
+     * the sql explained by configExplainQueryPlan(true)
+     */
+    private final HashSet<String> explainedSqlSet = new HashSet<String>();
+
+    private void checkQueryPlan(Selector selector, SqlInfo sqlInfo) {
+        if (!explainQueryPlan) return;
+        synchronized (explainedSqlSet) {
+            if (!explainedSqlSet.add(sqlInfo.getSql())) return;
+        }
+        try {
+            QueryPlan.explain(this, selector).log();
+        } catch (DbException e) {
+            LogUtils.e(e.getMessage(), e);
+        }
+    }
+
     public long count(Selector selector) throws DbException {
         Class<?> entityType = selector.getEntityType();
         if (!tableIsExist(entityType)) return 0;
 
         Table table = Table.get(this, entityType);
         DbModelSelector dmSelector = selector.select("count(" + table.id.getColumnName() + ") as count");
-        return findDbModelFirst(dmSelector).getLong("count");
+        Cursor cursor = execQuery(dmSelector.limit(1).toSqlInfo());
+        if (cursor != null) {
+            try {
+                if (cursor.moveToNext()) {
+                    return cursor.getLong(0);
+                }
+            } catch (Throwable e) {
+                throw new DbException(e);
+            } finally {
+                IOUtils.closeQuietly(cursor);
+            }
+        }
+        return 0;
     }
 
     public long count(Class<?> entityType) throws DbException {
@@ -586,6 +801,9 @@ public class DbUtils {
 
         private String dbDir;
 
+        private boolean walEnabled = false;
+        private int readConnectionPoolSize = 2;
+
         public DaoConfig(Context context) {
             this.context = context.getApplicationContext();
         }
@@ -632,6 +850,34 @@ public class DbUtils {
         public void setDbDir(String dbDir) {
             this.dbDir = dbDir;
         }
+
+        public boolean isWalEnabled() {
+            return walEnabled;
+        }
+
+        /**
+         * Write-ahead logging (API 11+, ignored before): the queries (find/count/execQuery) run on
+         * a pool of read-only connections and do not wait for the writes, which use one writer connection.
+         * The queries out of a transaction read the last committed data.
+         * Since API 16 the pool is the one of the framework, before it is a ReadConnectionPool.
+         */
+        public void setWalEnabled(boolean walEnabled) {
+            this.walEnabled = walEnabled;
+        }
+
+        public int getReadConnectionPoolSize() {
+            return readConnectionPoolSize;
+        }
+
+        /**
+         * @param readConnectionPoolSize the read-only connections of the WAL mode on API 11 to 15, 2 by default.
+         *                               Since API 16 the framework sizes its own pool.
+         */
+        public void setReadConnectionPoolSize(int readConnectionPoolSize) {
+            if (readConnectionPoolSize > 0) {
+                this.readConnectionPoolSize = readConnectionPoolSize;
+            }
+        }
     }
 
     public interface DbUpgradeListener {
@@ -663,12 +909,12 @@ public class DbUtils {
         Id id = table.id;
         if (id.isAutoIncrement()) {
             if (id.getColumnValue(entity) != null) {
-                execNonQuery(SqlInfoBuilder.buildUpdateSqlInfo(this, entity));
+                execEntityUpdate(entity);
             } else {
                 saveBindingIdWithoutTransaction(entity);
             }
         } else {
-            execNonQuery(SqlInfoBuilder.buildReplaceSqlInfo(this, entity));
+            execEntityInsert(entity, true);
         }
     }
 
@@ -677,38 +923,68 @@ public class DbUtils {
         Table table = Table.get(this, entityType);
         Id idColumn = table.id;
         if (idColumn.isAutoIncrement()) {
-            execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(this, entity));
-            long id = getLastAutoIncrementId(table.tableName);
+            // the auto increment id is the rowid
+            long id = execEntityInsert(entity, false);
             if (id == -1) {
                 return false;
             }
             idColumn.setAutoIncrementId(entity, id);
             return true;
         } else {
-            execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(this, entity));
+            execEntityInsert(entity, false);
             return true;
         }
     }
 
-    //************************************************ tools ***********************************
-
-    private long getLastAutoIncrementId(String tableName) throws DbException {
-        long id = -1;
-        Cursor cursor = execQuery("SELECT seq FROM sqlite_sequence WHERE name='" + tableName + "'");
-        if (cursor != null) {
-            try {
-                if (cursor.moveToNext()) {
-                    id = cursor.getLong(0);
+    /**
+     * key: EntityStatement.buildXxxKey(...)
+     */
+    private final LruMemoryCache<String, EntityStatement> statementCache =
+            new LruMemoryCache<String, EntityStatement>(STATEMENT_CACHE_SIZE) {
+                @Override
+                protected void entryRemoved(boolean evicted, String key, EntityStatement oldValue, EntityStatement newValue) {
+                    oldValue.close();
                 }
-            } catch (Throwable e) {
-                throw new DbException(e);
-            } finally {
-                IOUtils.closeQuietly(cursor);
+            };
+
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    /**
+     * 用缓存的预编译语句插入实体
+     *
+     * @return the row id, -1 if failed.
+     */
+    private long execEntityInsert(Object entity, boolean replace) throws DbException {
+        Table table = Table.get(this, entity.getClass());
+        String key = EntityStatement.buildInsertKey(table, replace);
+        EntityStatement statement = statementCache.get(key);
+        if (statement == null) {
+            statement = EntityStatement.buildInsert(table, replace);
+            if (statement == null) return -1;
+            statementCache.put(key, statement);
+        }
+        debugSql(statement.getSql());
+        return statement.execute(database, entity);
+    }
+
+    private void execEntityUpdate(Object entity, String... updateColumnNames) throws DbException {
+        Table table = Table.get(this, entity.getClass());
+        String key = EntityStatement.buildUpdateKey(table, updateColumnNames);
+        EntityStatement statement = statementCache.get(key);
+        if (statement == null) {
+            statement = EntityStatement.buildUpdate(table, updateColumnNames);
+            if (statement == null) {
+                execNonQuery(SqlInfoBuilder.buildUpdateSqlInfo(this, entity, updateColumnNames));
+                return;
             }
+            statementCache.put(key, statement);
         }
-        return id;
+        debugSql(statement.getSql());
+        statement.execute(database, entity);
     }
 
+    //************************************************ tools ***********************************
+
     /**
      * 不存在表就新建
      */
@@ -721,6 +997,26 @@ public class DbUtils {
                 execNonQuery(execAfterTableCreated);//设置表默认值
             }
         }
+        createIndexIfNotExist(entityType);
+    }
+
+    /**
+     * Create the indexes of the Index columns and the CompositeIndex, once for a table in the process,
+     * e.g. the indexes added to an existing table by an upgrade.
+     * An index which can not be created (e.g. a unique index over duplicate rows) is logged and skipped,
+     * the table is checked anyway, the writes do not fail and retry it.
+     */
+    public void createIndexIfNotExist(Class<?> entityType) throws DbException {
+        Table table = Table.get(this, entityType);
+        if (table.isCheckedIndex()) return;
+        for (SqlInfo sqlInfo : SqlInfoBuilder.buildCreateIndexSqlInfos(this, entityType)) {
+            try {
+                execNonQuery(sqlInfo);
+            } catch (DbException e) {
+                LogUtils.e("create index failed: " + sqlInfo.getSql(), e);
+            }
+        }
+        table.setCheckedIndex(true);
     }
 
     /**
@@ -763,6 +1059,7 @@ public class DbUtils {
                         String tableName = cursor.getString(0);
                         execNonQuery("DROP TABLE " + tableName);//清空
                         Table.remove(this, tableName);
+                        statementCache.evictAll();
                     } catch (Throwable e) {
                         LogUtils.e(e.getMessage(), e);
                     }
@@ -781,12 +1078,22 @@ public class DbUtils {
         String tableName = TableUtils.getTableName(entityType);
         execNonQuery("DROP TABLE " + tableName);
         Table.remove(this, entityType);
+        statementCache.evictAll();
     }
 
     public void close() {
         String dbName = this.daoConfig.getDbName();
         if (daoMap.containsKey(dbName)) {
             daoMap.remove(dbName);
+            synchronized (this) {
+                if (writeQueue != null) {
+                    writeQueue.close();
+                }
+            }
+            statementCache.evictAll();
+            if (readConnectionPool != null) {
+                readConnectionPool.close();
+            }
             this.database.close();
         }
     }
@@ -798,13 +1105,14 @@ public class DbUtils {
         }
     }
 
-    private Lock writeLock = new ReentrantLock();
+    private ReentrantLock writeLock = new ReentrantLock();
     private volatile boolean writeLocked = false;
 
     /**
      * 开启事务管理
      */
-    private void beginTransaction() {
+    private void beginTransaction() throws DbException {
+        awaitWriteQueue();// 先提交本线程在队列中的异步写入，保持写入顺序；提交失败时不再写入
         if (allowTransaction) {//允许开启
             database.beginTransaction();
         } else {//不允许锁定
@@ -821,7 +1129,10 @@ public class DbUtils {
 
     private void endTransaction() {
         if (allowTransaction) {
-            database.endTransaction();
+            // beginTransaction() may have failed before the transaction
+            if (database.inTransaction() && database.isDbLockedByCurrentThread()) {
+                database.endTransaction();
+            }
         }
         if (writeLocked) {
             writeLock.unlock();
@@ -829,8 +1140,23 @@ public class DbUtils {
         }
     }
 
+    /**
+     * Read your writes: commit the async writes queued by this thread before its query or its write
+     * out of the queue. The pending writes of the other threads are not waited for, they are read once committed.
+     * Not in a write of this thread (e.g. the writes of the queue), which would wait for itself.
+     */
+    private void awaitWriteQueue() throws DbException {
+        WriteQueue queue = writeQueue;
+        if (queue == null || !queue.hasPendingWritesOfThread()) return;
+        if (writeLock.isHeldByCurrentThread() || (database.inTransaction() && database.isDbLockedByCurrentThread())) {
+            return;
+        }
+        queue.flushWritesOfThread();
+    }
+
 
     public void execNonQuery(SqlInfo sqlInfo) throws DbException {
+        awaitWriteQueue();
         debugSql(sqlInfo.getSql());
         try {
             if (sqlInfo.getBindArgs() != null) {
@@ -844,6 +1170,7 @@ public class DbUtils {
     }
 
     public void execNonQuery(String sql) throws DbException {
+        awaitWriteQueue();
         debugSql(sql);
         try {
             database.execSQL(sql);
@@ -852,55 +1179,42 @@ public class DbUtils {
         }
     }
 
+    /**
+     * The queries run on a read connection in WAL mode, or on the writer connection in its transaction.
+     * Without a ReadConnectionPool the database itself chooses the connection (pooled since API 16 in WAL mode).
+     */
+    private SQLiteDatabase getReadDatabase() {
+        if (readConnectionPool == null || (database.inTransaction() && database.isDbLockedByCurrentThread())) {
+            return database;
+        }
+        return readConnectionPool.get();
+    }
+
+    /**
+     * The bind args are bound in their types, not as strings.
+     */
     public Cursor execQuery(SqlInfo sqlInfo) throws DbException {
+        awaitWriteQueue();
         debugSql(sqlInfo.getSql());
         try {
-            return database.rawQuery(sqlInfo.getSql(), sqlInfo.getBindArgsAsStrArray());
+            if (sqlInfo.getBindArgs() == null) {
+                return getReadDatabase().rawQuery(sqlInfo.getSql(), null);
+            }
+            return getReadDatabase().rawQueryWithFactory(new BindArgsCursorFactory(sqlInfo.getBindArgsAsArray()),
+                    sqlInfo.getSql(), sqlInfo.getBindArgsAsStrArray(), null);
         } catch (Throwable e) {
             throw new DbException(e);
         }
     }
 
     public Cursor execQuery(String sql) throws DbException {
+        awaitWriteQueue();
         debugSql(sql);
         try {
-            return database.rawQuery(sql, null);
+            return getReadDatabase().rawQuery(sql, null);
         } catch (Throwable e) {
             throw new DbException(e);
         }
     }
 
-    /////////////////////// temp cache ////////////////////////////////////////////////////////////////
-    private final FindTempCache findTempCache = new FindTempCache();
-
-    private class FindTempCache {
-        private FindTempCache() {
-        }
-
-        /**
-         * key: sql;
-         * value: find result
-         */
-        private final ConcurrentHashMap<String, Object> cache = new ConcurrentHashMap<String, Object>();
-
-        private long seq = 0;
-
-        public void put(String sql, Object result) {
-            if (sql != null && result != null) {
-                cache.put(sql, result);
-            }
-        }
-
-        public Object get(String sql) {
-            return cache.get(sql);
-        }
-
-        public void setSeq(long seq) {
-            if (this.seq != seq) {
-                cache.clear();
-                this.seq = seq;
-            }
-        }
-    }
-
 }
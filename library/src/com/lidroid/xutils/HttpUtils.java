@@ -21,25 +21,35 @@ import com.lidroid.xutils.exception.HttpException;
 import com.lidroid.xutils.http.*;
 import com.lidroid.xutils.http.callback.HttpRedirectHandler;
 import com.lidroid.xutils.http.callback.RequestCallBack;
+import com.lidroid.xutils.http.client.ConnPoolStats;
 import com.lidroid.xutils.http.client.DefaultSSLSocketFactory;
+import com.lidroid.xutils.http.client.HttpConnectionManager;
 import com.lidroid.xutils.http.client.HttpRequest;
+import com.lidroid.xutils.http.client.KeepAliveStrategy;
 import com.lidroid.xutils.http.client.RetryHandler;
 import com.lidroid.xutils.http.client.entity.GZipDecompressingEntity;
-import com.lidroid.xutils.task.PriorityExecutor;
+import com.lidroid.xutils.task.Priority;
+import com.lidroid.xutils.task.PriorityRunnable;
+import com.lidroid.xutils.task.QuotaExecutor;
+import com.lidroid.xutils.task.TaskFuture;
+import com.lidroid.xutils.task.TaskGroup;
+import com.lidroid.xutils.task.TaskScheduler;
+import com.lidroid.xutils.util.IOUtils;
 import com.lidroid.xutils.util.OtherUtils;
 
 import org.apache.http.*;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpRequestRetryHandler;
 import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.conn.params.ConnManagerParams;
 import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
@@ -50,6 +60,11 @@ import org.apache.http.protocol.HttpContext;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class HttpUtils {
 
@@ -58,6 +73,10 @@ public class HttpUtils {
     private final DefaultHttpClient httpClient;
     private final HttpContext httpContext = new BasicHttpContext();
 
+    private final HttpConnectionManager connectionManager;
+    private final ConnPerRouteBean connPerRoute;
+    private final KeepAliveStrategy keepAliveStrategy;
+
     private HttpRedirectHandler httpRedirectHandler;
 
     public HttpUtils() {
@@ -74,6 +93,15 @@ public class HttpUtils {
 
 
     public HttpUtils(int connTimeout, String userAgent) {
+        this(connTimeout, userAgent, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param maxConnections the max total connections of the pool, it can not be changed later.
+     *                       The max connections per route is configurable by
+     *                       {@link #configMaxConnectionsPerRoute(int)}.
+     */
+    public HttpUtils(int connTimeout, String userAgent, int maxConnections) {
         HttpParams params = new BasicHttpParams();
         //1.设置超时参数，超时释放资源
         ConnManagerParams.setTimeout(params, connTimeout);
@@ -87,9 +115,10 @@ public class HttpUtils {
         }
         HttpProtocolParams.setUserAgent(params, userAgent);
         //3.设置连接池最大连接数，每台主机最多连接数
-        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(10));//Sets
+        connPerRoute = new ConnPerRouteBean(Math.min(DEFAULT_MAX_CONNECTIONS_PER_ROUTE, maxConnections));
+        ConnManagerParams.setMaxConnectionsPerRoute(params, connPerRoute);//Sets
         // lookup interface for maximum number of connections allowed per route.
-        ConnManagerParams.setMaxTotalConnections(params, 10);//Sets the maximum number of
+        ConnManagerParams.setMaxTotalConnections(params, maxConnections);//Sets the maximum number of
         // connections allowed.
         //4.关闭算法延迟
         HttpConnectionParams.setTcpNoDelay(params, true);
@@ -101,9 +130,13 @@ public class HttpUtils {
         schemeRegistry.register(new Scheme("https", DefaultSSLSocketFactory.getSocketFactory(),
                 443));
 
-        //6.设置多线程管理
-        httpClient = new DefaultHttpClient(new ThreadSafeClientConnManager(params,
-                schemeRegistry), params);
+        //6.设置多线程管理，带连接池统计，定期回收空闲连接
+        connectionManager = new HttpConnectionManager(params, schemeRegistry);
+        connectionManager.setIdleTimeout(DEFAULT_IDLE_CONNECTION_TIMEOUT);
+        httpClient = new DefaultHttpClient(connectionManager, params);
+        //保持连接时间，优先使用响应头Keep-Alive: timeout
+        keepAliveStrategy = new KeepAliveStrategy(DEFAULT_KEEP_ALIVE);
+        httpClient.setKeepAliveStrategy(keepAliveStrategy);
         //7.请求失败处理,
         httpClient.setHttpRequestRetryHandler(new RetryHandler(DEFAULT_RETRY_TIMES));
         //8.请求发送前执行设置拦截器。 默认加上gizp压缩。 通过gizp压缩后的数据传输效率高很多。
@@ -148,16 +181,24 @@ public class HttpUtils {
     private String responseTextCharset = HTTP.UTF_8;
 
     private long currentRequestExpiry = HttpCache.getDefaultExpiryTime();
+    private long taskTimeout = 0;
 
     private final static int DEFAULT_CONN_TIMEOUT = 1000 * 15; // 15s
 
     private final static int DEFAULT_RETRY_TIMES = 3;
 
+    private final static int DEFAULT_MAX_CONNECTIONS = 10;
+    private final static int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    private final static long DEFAULT_KEEP_ALIVE = 1000 * 30; // 30s
+    private final static long DEFAULT_IDLE_CONNECTION_TIMEOUT = 1000 * 60; // 60s
+
     private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
     private static final String ENCODING_GZIP = "gzip";
 
     private final static int DEFAULT_POOL_SIZE = 3;
-    private final static PriorityExecutor EXECUTOR = new PriorityExecutor(DEFAULT_POOL_SIZE);
+    private final static QuotaExecutor EXECUTOR = TaskScheduler.getDefault().newBlockingExecutor(DEFAULT_POOL_SIZE);
+    // sendSyncAll(...) may be called in a task of EXECUTOR, its requests must not wait for that quota.
+    private final static QuotaExecutor SYNC_ALL_EXECUTOR = TaskScheduler.getDefault().newBlockingExecutor(DEFAULT_POOL_SIZE);
 
     public HttpClient getHttpClient() {
         return this.httpClient;
@@ -228,15 +269,76 @@ public class HttpUtils {
     }
 
     public HttpUtils configRequestRetryCount(int count) {
-        this.httpClient.setHttpRequestRetryHandler(new RetryHandler(count));
+        RetryHandler retryHandler = new RetryHandler(count);
+        this.httpClient.setHttpRequestRetryHandler(retryHandler);
+        return this;
+    }
+
+    /**
+     * Replace the default retry policy, see {@link RetryHandler}.
+     */
+    public HttpUtils configRequestRetryHandler(HttpRequestRetryHandler retryHandler) {
+        if (retryHandler != null) {
+            this.httpClient.setHttpRequestRetryHandler(retryHandler);
+        }
+        return this;
+    }
+
+    /**
+     * A request still queued after the timeout is cancelled, a running one fails with a
+     * HttpException instead of retrying or reading on.
+     *
+     * @param taskTimeout milliseconds from send, 0 for none.
+     */
+    public HttpUtils configTaskTimeout(long taskTimeout) {
+        this.taskTimeout = taskTimeout;
         return this;
     }
 
     public HttpUtils configRequestThreadPoolSize(int threadPoolSize) {
-        HttpUtils.EXECUTOR.setPoolSize(threadPoolSize);
+        HttpUtils.EXECUTOR.setQuota(threadPoolSize);
+        return this;
+    }
+
+    public HttpUtils configMaxConnectionsPerRoute(int maxConnections) {
+        if (maxConnections > 0) {
+            connPerRoute.setDefaultMaxPerRoute(maxConnections);
+        }
+        return this;
+    }
+
+    /**
+     * @param route e.g. new HttpRoute(new HttpHost("api.example.com", 443, "https"), null, true)
+     */
+    public HttpUtils configMaxConnectionsForRoute(HttpRoute route, int maxConnections) {
+        if (route != null && maxConnections > 0) {
+            connPerRoute.setMaxForRoute(route, maxConnections);
+        }
+        return this;
+    }
+
+    /**
+     * @param keepAlive milliseconds to keep a connection without "Keep-Alive: timeout" header,
+     *                  <=0 means forever.
+     */
+    public HttpUtils configDefaultKeepAlive(long keepAlive) {
+        keepAliveStrategy.setDefaultKeepAlive(keepAlive);
+        return this;
+    }
+
+    /**
+     * @param idleTimeout milliseconds, the idle and the expired connections are closed by
+     *                    a background reaper; <=0 to stop the reaper.
+     */
+    public HttpUtils configIdleConnectionTimeout(long idleTimeout) {
+        connectionManager.setIdleTimeout(idleTimeout);
         return this;
     }
 
+    public ConnPoolStats getConnPoolStats() {
+        return connectionManager.getStats();
+    }
+
     // ***************************************** send request
     // *******************************************
 
@@ -266,6 +368,99 @@ public class HttpUtils {
         return sendSyncRequest(request, params);
     }
 
+    public TaskFuture<ResponseInfo<String>> sendAsync(HttpRequest.HttpMethod method, String url) {
+        return sendAsync(method, url, null);
+    }
+
+    /**
+     * Send the request on the request thread pool, without any callback on the main thread.
+     * Cancelling the future aborts the request.
+     *
+     * @return the future of the response text, see {@link TaskFuture} to chain the next steps.
+     */
+    public TaskFuture<ResponseInfo<String>> sendAsync(HttpRequest.HttpMethod method, String url,
+                                                      final RequestParams params) {
+        if (url == null) throw new IllegalArgumentException("url may not be null");
+
+        final HttpRequest request = new HttpRequest(method, url);
+        final TaskFuture<ResponseInfo<String>> future = new TaskFuture<ResponseInfo<String>>();
+        future.onCancel(new Runnable() {
+            @Override
+            public void run() {
+                request.abort();
+            }
+        });
+        EXECUTOR.execute(new PriorityRunnable(Priority.DEFAULT, new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) return;
+                ResponseStream stream = null;
+                try {
+                    stream = sendSyncRequest(request, params);
+                    String result = stream.readString();
+                    HttpResponse response = stream.getBaseResponse();
+                    future.complete(new ResponseInfo<String>(response, result, response == null));
+                } catch (Throwable e) {
+                    future.fail(e);
+                } finally {
+                    IOUtils.closeQuietly(stream);
+                }
+            }
+        }));
+        return future;
+    }
+
+    /**
+     * Send the requests concurrently, at most DEFAULT_POOL_SIZE at the same time.
+     * Every request has its own HttpContext over the shared one (the cookie store is shared).
+     * If one of them fails, the others are aborted and the opened streams are closed.
+     *
+     * @return the response streams in the order of the urls, the caller must close them.
+     */
+    public List<ResponseStream> sendSyncAll(HttpRequest.HttpMethod method, String... urls) throws HttpException {
+        TaskGroup<ResponseStream> group = new TaskGroup<ResponseStream>(SYNC_ALL_EXECUTOR);
+        List<Future<ResponseStream>> futures = new ArrayList<Future<ResponseStream>>(urls.length);
+        for (String url : urls) {
+            if (url == null) throw new IllegalArgumentException("url may not be null");
+            final HttpRequest request = new HttpRequest(method, url);
+            final HttpContext context = new BasicHttpContext(httpContext);
+            futures.add(group.fork(new Callable<ResponseStream>() {
+                @Override
+                public ResponseStream call() throws Exception {
+                    return sendSyncRequest(request, null, context);
+                }
+            }, new Runnable() {
+                @Override
+                public void run() {
+                    request.abort();
+                }
+            }));
+        }
+
+        try {
+            return group.joinAll();
+        } catch (ExecutionException e) {
+            closeQuietly(futures);
+            Throwable cause = e.getCause();
+            throw cause instanceof HttpException ? (HttpException) cause : new HttpException(cause);
+        } catch (InterruptedException e) {
+            closeQuietly(futures);
+            Thread.currentThread().interrupt();
+            throw new HttpException(e);
+        }
+    }
+
+    private static void closeQuietly(List<Future<ResponseStream>> futures) {
+        for (Future<ResponseStream> future : futures) {
+            try {
+                if (future.isDone() && !future.isCancelled()) {
+                    future.get().close();
+                }
+            } catch (Throwable ignored) {
+            }
+        }
+    }
+
     // ***************************************** download
     // *******************************************
 
@@ -326,6 +521,7 @@ public class HttpUtils {
 
         handler.setExpiry(currentRequestExpiry);
         handler.setHttpRedirectHandler(httpRedirectHandler);
+        handler.setTimeout(taskTimeout);
 
         if (params != null) {
             request.setRequestParams(params, handler);
@@ -350,6 +546,7 @@ public class HttpUtils {
                 callBack);
         handler.setExpiry(currentRequestExpiry);//设置终止时间
         handler.setHttpRedirectHandler(httpRedirectHandler);
+        handler.setTimeout(taskTimeout);
         request.setRequestParams(params, handler);//设置请求参数，同时添加Handler引用
         if (params != null) {
             handler.setPriority(params.getPriority());//设置优先级
@@ -360,8 +557,13 @@ public class HttpUtils {
 
     private ResponseStream sendSyncRequest(HttpRequest request, RequestParams params) throws
             HttpException {
+        return sendSyncRequest(request, params, httpContext);
+    }
+
+    private ResponseStream sendSyncRequest(HttpRequest request, RequestParams params, HttpContext context) throws
+            HttpException {
 
-        SyncHttpHandler handler = new SyncHttpHandler(httpClient, httpContext, responseTextCharset);
+        SyncHttpHandler handler = new SyncHttpHandler(httpClient, context, responseTextCharset);
 
         handler.setExpiry(currentRequestExpiry);
         handler.setHttpRedirectHandler(httpRedirectHandler);
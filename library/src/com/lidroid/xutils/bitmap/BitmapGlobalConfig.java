@@ -25,7 +25,8 @@ import com.lidroid.xutils.bitmap.download.Downloader;
 import com.lidroid.xutils.cache.FileNameGenerator;
 import com.lidroid.xutils.task.Priority;
 import com.lidroid.xutils.task.PriorityAsyncTask;
-import com.lidroid.xutils.task.PriorityExecutor;
+import com.lidroid.xutils.task.QuotaExecutor;
+import com.lidroid.xutils.task.TaskScheduler;
 import com.lidroid.xutils.util.LogUtils;
 import com.lidroid.xutils.util.OtherUtils;
 
@@ -51,13 +52,17 @@ public class BitmapGlobalConfig {
     private BitmapCache bitmapCache;
 
     private final static int DEFAULT_POOL_SIZE = 5;
-    private final static PriorityExecutor BITMAP_LOAD_EXECUTOR = new PriorityExecutor
+    private final static QuotaExecutor BITMAP_LOAD_EXECUTOR = TaskScheduler.getDefault().newBlockingExecutor
             (DEFAULT_POOL_SIZE);
-    private final static PriorityExecutor DISK_CACHE_EXECUTOR = new PriorityExecutor(2);
+    private final static QuotaExecutor DISK_CACHE_EXECUTOR = TaskScheduler.getDefault().newBlockingExecutor(2);
+    // 解码占用CPU，在共享线程池的配额内执行，受poolSize和UI保留线程的限制
+    private final static QuotaExecutor DECODE_EXECUTOR = TaskScheduler.getDefault().newExecutor(
+            Math.max(1, Runtime.getRuntime().availableProcessors()));
 
     private long defaultCacheExpiry = 1000L * 60 * 60 * 24 * 30; // 30 days
     private int defaultConnectTimeout = 1000 * 15; // 15 sec
     private int defaultReadTimeout = 1000 * 15; // 15 sec
+    private long taskTimeout = 0; // none
 
     private FileNameGenerator fileNameGenerator;
 
@@ -144,6 +149,17 @@ public class BitmapGlobalConfig {
         this.defaultReadTimeout = defaultReadTimeout;
     }
 
+    public long getTaskTimeout() {
+        return taskTimeout;
+    }
+
+    /**
+     * @param taskTimeout milliseconds from display, after which the load task is given up, 0 for none.
+     */
+    public void setTaskTimeout(long taskTimeout) {
+        this.taskTimeout = taskTimeout;
+    }
+
     public BitmapCache getBitmapCache() {
         if (bitmapCache == null) {
             bitmapCache = new BitmapCache(this);
@@ -193,21 +209,28 @@ public class BitmapGlobalConfig {
     }
 
     public int getThreadPoolSize() {
-        return BitmapGlobalConfig.BITMAP_LOAD_EXECUTOR.getPoolSize();
+        return BitmapGlobalConfig.BITMAP_LOAD_EXECUTOR.getQuota();
     }
 
     public void setThreadPoolSize(int threadPoolSize) {
-        BitmapGlobalConfig.BITMAP_LOAD_EXECUTOR.setPoolSize(threadPoolSize);
+        BitmapGlobalConfig.BITMAP_LOAD_EXECUTOR.setQuota(threadPoolSize);
     }
 
-    public PriorityExecutor getBitmapLoadExecutor() {
+    public QuotaExecutor getBitmapLoadExecutor() {
         return BitmapGlobalConfig.BITMAP_LOAD_EXECUTOR;
     }
 
-    public PriorityExecutor getDiskCacheExecutor() {
+    public QuotaExecutor getDiskCacheExecutor() {
         return BitmapGlobalConfig.DISK_CACHE_EXECUTOR;
     }
 
+    /**
+     * The executor of the decoding, the load tasks wait for it after reading the disk cache or the network.
+     */
+    public QuotaExecutor getDecodeExecutor() {
+        return BitmapGlobalConfig.DECODE_EXECUTOR;
+    }
+
     public boolean isMemoryCacheEnabled() {
         return memoryCacheEnabled;
     }
@@ -26,11 +26,16 @@ import com.lidroid.xutils.bitmap.factory.BitmapFactory;
 import com.lidroid.xutils.cache.FileNameGenerator;
 import com.lidroid.xutils.cache.LruDiskCache;
 import com.lidroid.xutils.cache.LruMemoryCache;
+import com.lidroid.xutils.task.Priority;
+import com.lidroid.xutils.task.PriorityRunnable;
 import com.lidroid.xutils.util.IOUtils;
 import com.lidroid.xutils.util.LogUtils;
 import com.lidroid.xutils.util.OtherUtils;
 
 import java.io.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 
 public class BitmapCache {
@@ -302,15 +307,9 @@ public class BitmapCache {
             try {
                 snapshot = mDiskLruCache.get(uri);
                 if (snapshot != null) {
-                    Bitmap bitmap = null;
-                    if (config == null || config.isShowOriginal()) {//显示原图
-                        bitmap = BitmapDecoder.decodeFileDescriptor(snapshot.getInputStream
-                                (DISK_CACHE_INDEX).getFD());
-                    } else {//图片压缩
-                        bitmap = BitmapDecoder.decodeSampledBitmapFromDescriptor(snapshot
-                                .getInputStream(DISK_CACHE_INDEX).getFD(), config
-                                .getBitmapMaxSize(), config.getBitmapConfig());
-                    }
+                    BitmapMeta bitmapMeta = new BitmapMeta();
+                    bitmapMeta.inputStream = snapshot.getInputStream(DISK_CACHE_INDEX);
+                    Bitmap bitmap = decodeBitmapMeta(bitmapMeta, config);//显示原图或图片压缩
                     bitmap = rotateBitmapIfNeeded(uri, config, bitmap);//图片旋转
                     bitmap = addBitmapToMemoryCache(uri, config, bitmap, mDiskLruCache
                             .getExpiryTimestamp(uri));
@@ -428,9 +427,35 @@ public class BitmapCache {
      * 1.如果BitmapMeta对象输入流不为空，以输入流获取Bitmap
      * 2.如果BitmapMeta对象byte数据不为空，以此数据获取Bitmap
      */
-    private Bitmap decodeBitmapMeta(BitmapMeta bitmapMeta, BitmapDisplayConfig config) throws
+    private Bitmap decodeBitmapMeta(final BitmapMeta bitmapMeta, final BitmapDisplayConfig config) throws
             IOException {
         if (bitmapMeta == null) return null;
+        // 解码在CPU配额的线程中执行，当前（阻塞I/O）线程等待结果
+        FutureTask<Bitmap> decodeTask = new FutureTask<Bitmap>(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() throws Exception {
+                return decodeBitmapMetaInCurrentThread(bitmapMeta, config);
+            }
+        });
+        Priority priority = config == null ? Priority.DEFAULT : config.getPriority();
+        globalConfig.getDecodeExecutor().execute(new PriorityRunnable(priority, decodeTask));
+        try {
+            return decodeTask.get();
+        } catch (InterruptedException e) {
+            decodeTask.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("decode interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(String.valueOf(cause));
+        }
+    }
+
+    private Bitmap decodeBitmapMetaInCurrentThread(BitmapMeta bitmapMeta, BitmapDisplayConfig config) throws
+            IOException {
         Bitmap bitmap = null;
         if (bitmapMeta.inputStream != null) {
             if (config == null || config.isShowOriginal()) {
@@ -15,6 +15,10 @@
 
 package com.lidroid.xutils.cache;
 
+import com.lidroid.xutils.task.Priority;
+import com.lidroid.xutils.task.PriorityRunnable;
+import com.lidroid.xutils.task.QuotaExecutor;
+import com.lidroid.xutils.task.TaskScheduler;
 import com.lidroid.xutils.util.IOUtils;
 import com.lidroid.xutils.util.LogUtils;
 
@@ -27,9 +31,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.FutureTask;
 
 /**
  * A cache that uses a bounded amount of space on a filesystem. Each cache
@@ -136,8 +138,7 @@ public final class LruDiskCache implements Closeable {
     private final int valueCount;
     private long size = 0;
     private Writer journalWriter;
-    private final LinkedHashMap<String, Entry> lruEntries = new LinkedHashMap<String, Entry>(0, 0
-    .75f,true);
+    private final LinkedHashMap<String, Entry> lruEntries = new LinkedHashMap<String, Entry>(0, 0.75f, true);
     private int redundantOpCount;
 
     /**
@@ -148,10 +149,9 @@ public final class LruDiskCache implements Closeable {
     private long nextSequenceNumber = 0;
 
     /**
-     * This cache uses a single background thread to evict entries.
+     * This cache evicts entries in the background, one cleanup at a time.
      */
-    final ThreadPoolExecutor executorService = new ThreadPoolExecutor(0, 1, 60L, TimeUnit
-            .SECONDS, new LinkedBlockingQueue<Runnable>());
+    final QuotaExecutor executorService = TaskScheduler.getDefault().newBlockingExecutor(1);
 
     private final Callable<Void> cleanupCallable = new Callable<Void>() {
         public Void call() throws Exception {
@@ -169,6 +169,10 @@ public final class LruDiskCache implements Closeable {
         }
     };
 
+    private void scheduleCleanup() {
+        executorService.execute(new PriorityRunnable(Priority.BG_LOW, new FutureTask<Void>(cleanupCallable)));
+    }
+
     private LruDiskCache(File directory, int appVersion, int valueCount, long maxSize) {
         this.directory = directory;
         this.appVersion = appVersion;
@@ -515,7 +519,7 @@ public final class LruDiskCache implements Closeable {
             journalWriter.append(DELETE + " " + diskKey + '\n');//添加删除记录
             lruEntries.remove(diskKey);
             if (journalRebuildRequired()) {//重构日志文件
-                executorService.submit(cleanupCallable);
+                scheduleCleanup();
             }
             return null;
         }
@@ -543,7 +547,7 @@ public final class LruDiskCache implements Closeable {
         redundantOpCount++;
         journalWriter.append(READ + " " + diskKey + '\n');//添加读取记录
         if (journalRebuildRequired()) {
-            executorService.submit(cleanupCallable);
+            scheduleCleanup();
         }
 
         return new Snapshot(diskKey, entry.sequenceNumber, ins, entry.lengths);
@@ -608,7 +612,7 @@ public final class LruDiskCache implements Closeable {
      */
     public synchronized void setMaxSize(long maxSize) {
         this.maxSize = maxSize;
-        executorService.submit(cleanupCallable);
+        scheduleCleanup();
     }
 
     /**
@@ -679,7 +683,7 @@ public final class LruDiskCache implements Closeable {
         journalWriter.flush();
 
         if (size > maxSize || journalRebuildRequired()) {
-            executorService.submit(cleanupCallable);
+            scheduleCleanup();
         }
     }
 
@@ -727,7 +731,7 @@ public final class LruDiskCache implements Closeable {
         lruEntries.remove(diskKey);
 
         if (journalRebuildRequired()) {
-            executorService.submit(cleanupCallable);
+            scheduleCleanup();
         }
 
         return true;
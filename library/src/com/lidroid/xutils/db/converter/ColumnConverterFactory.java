@@ -3,6 +3,7 @@ package com.lidroid.xutils.db.converter;
 import com.lidroid.xutils.db.sqlite.ColumnDbType;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -39,6 +40,13 @@ public class ColumnConverterFactory {
         return ColumnDbType.TEXT;
     }
 
+    /**
+     * @return true if the converter is the default one of the type, not replaced by registerColumnConverter(...)
+     */
+    public static boolean isDefaultColumnConverter(Class columnType, ColumnConverter columnConverter) {
+        return columnConverter != null && defaultColumnConverterMap.get(columnType.getName()) == columnConverter;
+    }
+
     public static void registerColumnConverter(Class columnType, ColumnConverter columnConverter) {
         columnType_columnConverter_map.put(columnType.getName(), columnConverter);
     }
@@ -64,6 +72,8 @@ public class ColumnConverterFactory {
 
     private static final ConcurrentHashMap<String, ColumnConverter> columnType_columnConverter_map;
 
+    private static final HashMap<String, ColumnConverter> defaultColumnConverterMap;
+
     static {
         columnType_columnConverter_map = new ConcurrentHashMap<String, ColumnConverter>();
 
@@ -110,5 +120,7 @@ public class ColumnConverterFactory {
 
         StringColumnConverter stringColumnConverter = new StringColumnConverter();
         columnType_columnConverter_map.put(String.class.getName(), stringColumnConverter);
+
+        defaultColumnConverterMap = new HashMap<String, ColumnConverter>(columnType_columnConverter_map);
     }
 }
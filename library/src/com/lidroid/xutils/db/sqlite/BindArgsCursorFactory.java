@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+/**
+ * SQLiteDatabase.rawQuery(...) binds the args as strings, a number compared with an expression
+ * (e.g. "count(id) > ?") would be compared as a string. The factory binds the args again in their types
+ * before the query is run:
+ * <pre>
+ * database.rawQueryWithFactory(new BindArgsCursorFactory(args), sql, strArgs, null);
+ * </pre>
+ */
+public class BindArgsCursorFactory implements SQLiteDatabase.CursorFactory {
+
+    private final Object[] bindArgs;
+
+    public BindArgsCursorFactory(Object[] bindArgs) {
+        this.bindArgs = bindArgs;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
+        if (bindArgs != null) {
+            for (int i = 0; i < bindArgs.length; i++) {
+                bind(query, i + 1, bindArgs[i]);
+            }
+        }
+        return new SQLiteCursor(db, masterQuery, editTable, query);
+    }
+
+    private static void bind(SQLiteQuery query, int index, Object arg) {
+        if (arg == null) {
+            query.bindNull(index);
+        } else if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            query.bindLong(index, ((Number) arg).longValue());
+        } else if (arg instanceof Double || arg instanceof Float) {
+            query.bindDouble(index, ((Number) arg).doubleValue());
+        } else if (arg instanceof Boolean) {
+            query.bindLong(index, (Boolean) arg ? 1 : 0);
+        } else if (arg instanceof byte[]) {
+            query.bindBlob(index, (byte[]) arg);
+        } else {
+            query.bindString(index, arg.toString());
+        }
+    }
+}
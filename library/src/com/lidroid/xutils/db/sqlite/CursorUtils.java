@@ -21,15 +21,16 @@ import com.lidroid.xutils.DbUtils;
 import com.lidroid.xutils.db.table.*;
 import com.lidroid.xutils.util.LogUtils;
 
-import java.util.concurrent.ConcurrentHashMap;
-
 public class CursorUtils {
 
-    @SuppressWarnings("unchecked")
-    public static <T> T getEntity(final DbUtils db, final Cursor cursor, Class<T> entityType, long findCacheSequence) {
+    /**
+     * Read the entity of the current row in the FindSession of the current thread,
+     * an entity already read in the session is returned again.
+     */
+    public static <T> T getEntity(final DbUtils db, final Cursor cursor, Class<T> entityType) {
         if (db == null || cursor == null) return null;
 
-        EntityTempCache.setSeq(findCacheSequence);
+        FindSession session = FindSession.begin();
         try {
             Table table = Table.get(db, entityType);
             Id id = table.id;
@@ -39,11 +40,15 @@ public class CursorUtils {
                 idIndex = cursor.getColumnIndex(idColumnName);
             }
             Object idValue = id.getColumnConverter().getFieldValue(cursor, idIndex);
-            T entity = EntityTempCache.get(entityType, idValue);
+            T entity = session.getEntity(entityType, idValue);
             if (entity == null) {
-                entity = entityType.newInstance();
+                EntityBinder<T> binder = EntityBinder.get(entityType);
+                entity = binder == null ? null : binder.newInstance();
+                if (entity == null) {
+                    entity = entityType.newInstance();
+                }
                 id.setValue2Entity(entity, cursor, idIndex);
-                EntityTempCache.put(entityType, idValue, entity);
+                session.putEntity(entityType, idValue, entity);// before the relations, which may refer back to it
             } else {
                 return entity;
             }
@@ -63,6 +68,8 @@ public class CursorUtils {
             return entity;
         } catch (Throwable e) {
             LogUtils.e(e.getMessage(), e);
+        } finally {
+            session.end();
         }
 
         return null;
@@ -80,45 +87,17 @@ public class CursorUtils {
         return result;
     }
 
-    public static class FindCacheSequence {
-        private FindCacheSequence() {
-        }
-
-        private static long seq = 0;
-        private static final String FOREIGN_LAZY_LOADER_CLASS_NAME = ForeignLazyLoader.class.getName();
-        private static final String FINDER_LAZY_LOADER_CLASS_NAME = FinderLazyLoader.class.getName();
-
-        public static long getSeq() {
-            String findMethodCaller = Thread.currentThread().getStackTrace()[4].getClassName();//？
-            if (!findMethodCaller.equals(FOREIGN_LAZY_LOADER_CLASS_NAME) && !findMethodCaller.equals(FINDER_LAZY_LOADER_CLASS_NAME)) {
-                ++seq;
-            }
-            return seq;
-        }
-    }
-
-    private static class EntityTempCache {
-        private EntityTempCache() {
-        }
-
-        private static final ConcurrentHashMap<String, Object> cache = new ConcurrentHashMap<String, Object>();
-
-        private static long seq = 0;
-
-        public static <T> void put(Class<T> entityType, Object idValue, Object entity) {
-            cache.put(entityType.getName() + "#" + idValue, entity);
-        }
-
-        @SuppressWarnings("unchecked")
-        public static <T> T get(Class<T> entityType, Object idValue) {
-            return (T) cache.get(entityType.getName() + "#" + idValue);
-        }
-
-        public static void setSeq(long seq) {
-            if (EntityTempCache.seq != seq) {
-                cache.clear();
-                EntityTempCache.seq = seq;
+    /**
+     * Read all the rows of the cursor in their types.
+     */
+    public static DbModelSet getDbModelSet(final Cursor cursor) {
+        DbModelSet result = null;
+        if (cursor != null) {
+            result = new DbModelSet(cursor.getColumnNames());
+            while (cursor.moveToNext()) {
+                result.addRow(cursor);
             }
         }
+        return result;
     }
 }
@@ -127,9 +127,47 @@ public class DbModelSelector {
         return selector.getEntityType();
     }
 
+    /**
+     * @return the sql with "?" for the values of the where and having clauses, and the values as bind args.
+     */
+    public SqlInfo toSqlInfo() {
+        SqlInfo result = new SqlInfo();
+        StringBuilder sql = new StringBuilder();
+        appendSelectFrom(sql);
+        if (selector.whereBuilder != null && selector.whereBuilder.getWhereItemSize() > 0) {
+            sql.append(" WHERE ");
+            selector.whereBuilder.appendTemplate(sql, result);
+        }
+        if (!TextUtils.isEmpty(groupByColumnName)) {
+            sql.append(" GROUP BY ").append(groupByColumnName);
+            if (having != null && having.getWhereItemSize() > 0) {
+                sql.append(" HAVING ");
+                having.appendTemplate(sql, result);
+            }
+        }
+        selector.appendOrderByAndLimit(sql);
+        result.setSql(sql.toString());
+        return result;
+    }
+
     @Override
     public String toString() {
-        StringBuffer result = new StringBuffer();
+        StringBuilder result = new StringBuilder();
+        appendSelectFrom(result);
+        if (selector.whereBuilder != null && selector.whereBuilder.getWhereItemSize() > 0) {
+            result.append(" WHERE ").append(selector.whereBuilder.toString());
+        }
+        if (!TextUtils.isEmpty(groupByColumnName)) {
+            result.append(" GROUP BY ").append(groupByColumnName);
+            if (having != null && having.getWhereItemSize() > 0) {
+                result.append(" HAVING ").append(having.toString());
+            }
+        }
+        selector.appendOrderByAndLimit(result);
+        return result.toString();
+    }
+
+    private void appendSelectFrom(StringBuilder result) {
         result.append("SELECT ");
         if (columnExpressions != null && columnExpressions.length > 0) {
             for (int i = 0; i < columnExpressions.length; i++) {
@@ -145,24 +183,5 @@ public class DbModelSelector {
             }
         }
         result.append(" FROM ").append(selector.tableName);
-        if (selector.whereBuilder != null && selector.whereBuilder.getWhereItemSize() > 0) {
-            result.append(" WHERE ").append(selector.whereBuilder.toString());
-        }
-        if (!TextUtils.isEmpty(groupByColumnName)) {
-            result.append(" GROUP BY ").append(groupByColumnName);
-            if (having != null && having.getWhereItemSize() > 0) {
-                result.append(" HAVING ").append(having.toString());
-            }
-        }
-        if (selector.orderByList != null) {
-            for (int i = 0; i < selector.orderByList.size(); i++) {
-                result.append(" ORDER BY ").append(selector.orderByList.get(i).toString());
-            }
-        }
-        if (selector.limit > 0) {
-            result.append(" LIMIT ").append(selector.limit);
-            result.append(" OFFSET ").append(selector.offset);
-        }
-        return result.toString();
     }
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.sqlite;
+
+import android.database.Cursor;
+
+import com.lidroid.xutils.DbUtils;
+import com.lidroid.xutils.db.table.Column;
+import com.lidroid.xutils.db.table.EntityBinder;
+import com.lidroid.xutils.db.table.Finder;
+import com.lidroid.xutils.db.table.Table;
+import com.lidroid.xutils.exception.DbException;
+import com.lidroid.xutils.util.IOUtils;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the entities of a Selector, an entity is read from the cursor by every next().
+ * <p/>
+ * The rows are queried at once, or page by page (LIMIT/OFFSET, or "id > last id" for pageById),
+ * so the memory does not grow with the count of the rows. The iterator is closed at the end,
+ * close it if the iteration is stopped before:
+ * <pre>
+ * EntityIterator&lt;User&gt; users = db.iterate(Selector.from(User.class), 500);
+ * try {
+ *     for (User user : users) { ... }
+ * } finally {
+ *     users.close();
+ * }
+ * </pre>
+ * Every row is read in its own FindSession, the entities are not kept after it.
+ */
+public class EntityIterator<T> implements Iterator<T>, Iterable<T>, Closeable {
+
+    private final DbUtils db;
+    private final Selector selector;
+    private final Class<T> entityType;
+    private final Table table;
+    private final int pageSize;
+    private final boolean pageById;
+
+    private boolean reuseEntity = false;
+    private T entity;
+
+    private Cursor cursor;
+    private Column[] cursorColumns; // the column of every cursor index, null for the id and unknown ones
+    private int idIndex;
+    private int pageLimit; // LIMIT of the current query, 0 for none
+    private int pageCount; // rows taken from the current query
+    private int count; // rows taken
+    private Object lastIdValue;
+    private boolean nextReady = false;
+    private boolean closed = false;
+
+    /**
+     * @param pageSize the rows of a query, 0 to query all at once.
+     * @param pageById the pages are "id > last id ORDER BY id" instead of LIMIT/OFFSET, which is stable
+     *                 while the table is modified and does not scan the skipped rows.
+     *                 The selector may not have an orderBy.
+     */
+    @SuppressWarnings("unchecked")
+    public EntityIterator(DbUtils db, Selector selector, int pageSize, boolean pageById) throws DbException {
+        if (pageById && selector.orderByList != null) {
+            throw new IllegalArgumentException("the pages by id are ordered by id, orderBy is not supported");
+        }
+        if (pageById && pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.db = db;
+        this.selector = selector;
+        this.entityType = (Class<T>) selector.getEntityType();
+        this.table = Table.get(db, entityType);
+        this.pageSize = pageSize;
+        this.pageById = pageById;
+
+        if (db.tableIsExist(entityType)) {
+            openPage();
+        } else {
+            closed = true;
+        }
+    }
+
+    /**
+     * @param reuseEntity true to read every row into the same entity (flyweight),
+     *                    do not keep the entities returned by next().
+     */
+    public EntityIterator<T> reuseEntity(boolean reuseEntity) {
+        this.reuseEntity = reuseEntity;
+        return this;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextReady) return true;
+        while (!closed) {
+            if (cursor != null && cursor.moveToNext()) {
+                nextReady = true;
+                return true;
+            }
+            // a full page, there may be more
+            boolean hasMorePages = cursor != null && pageLimit > 0 && pageCount == pageLimit
+                    && (selector.limit <= 0 || count < selector.limit);
+            IOUtils.closeQuietly(cursor);
+            cursor = null;
+            if (!hasMorePages) {
+                close();
+                break;
+            }
+            try {
+                openPage();
+            } catch (DbException e) {
+                close();
+                throw new IllegalStateException(e);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        nextReady = false;
+        count++;
+        pageCount++;
+        try {
+            T result = readEntity(reuseEntity ? entity : null);
+            if (reuseEntity) {
+                entity = result;
+            }
+            return result;
+        } catch (Throwable e) {
+            close();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        nextReady = false;
+        IOUtils.closeQuietly(cursor);
+        cursor = null;
+    }
+
+    private void openPage() throws DbException {
+        int limit = selector.limit;
+        if (pageSize > 0) {
+            if (limit > 0) {
+                limit = Math.min(pageSize, limit - count);
+            } else {
+                limit = pageSize;
+            }
+        }
+        pageLimit = limit;
+        pageCount = 0;
+
+        cursor = db.execQuery(buildSql(limit));
+        if (cursor == null) {
+            closed = true;
+            return;
+        }
+        idIndex = cursor.getColumnIndex(table.id.getColumnName());
+        int columnCount = cursor.getColumnCount();
+        cursorColumns = new Column[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            cursorColumns[i] = table.columnMap.get(cursor.getColumnName(i));
+        }
+    }
+
+    private SqlInfo buildSql(int limit) {
+        String idColumnName = table.id.getColumnName();
+
+        SqlInfo result = new SqlInfo();
+        StringBuilder sb = new StringBuilder("SELECT * FROM ").append(selector.tableName);
+        boolean hasWhere = selector.whereBuilder != null && selector.whereBuilder.getWhereItemSize() > 0;
+        boolean hasIdWhere = pageById && lastIdValue != null;
+        if (hasWhere || hasIdWhere) {
+            sb.append(" WHERE ");
+        }
+        if (hasWhere && hasIdWhere) {
+            sb.append("(");
+            selector.whereBuilder.appendTemplate(sb, result);
+            sb.append(") AND ");
+        } else if (hasWhere) {
+            selector.whereBuilder.appendTemplate(sb, result);
+        }
+        if (hasIdWhere) {
+            WhereBuilder idWhere = WhereBuilder.b(idColumnName, ">", lastIdValue);
+            LinkedList<Object> bindArgs = result.getBindArgs();
+            if (bindArgs != null && bindArgs.size() >= WhereBuilder.MAX_BIND_ARGS) {
+                sb.append(idWhere.toString()); // the where binds all the variables, inline the id
+            } else {
+                idWhere.appendTemplate(sb, result);
+            }
+        }
+
+        if (pageById) {
+            sb.append(" ORDER BY ").append(idColumnName).append(" ASC");
+        } else if (selector.orderByList != null) {
+            for (int i = 0; i < selector.orderByList.size(); i++) {
+                sb.append(i == 0 ? " ORDER BY " : ", ").append(selector.orderByList.get(i).toString());
+            }
+        }
+
+        if (limit > 0) {
+            // the pages by id skip the offset of the selector only once
+            int offset = pageById ? (lastIdValue == null ? selector.offset : 0) : selector.offset + count;
+            sb.append(" LIMIT ").append(limit).append(" OFFSET ").append(offset);
+        }
+        result.setSql(sb.toString());
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T readEntity(T entity) throws Exception {
+        boolean reset = entity != null;
+        if (entity == null) {
+            EntityBinder<T> binder = EntityBinder.get(entityType);
+            entity = binder == null ? null : binder.newInstance();
+            if (entity == null) {
+                entity = entityType.newInstance();
+            }
+        }
+
+        Object idValue = idIndex < 0 ? null : table.id.getColumnConverter().getFieldValue(cursor, idIndex);
+        if (pageById) {
+            lastIdValue = idValue;
+        }
+
+        // a session for the row, the relations which refer back to it get this entity
+        FindSession session = FindSession.begin();
+        try {
+            session.putEntity(entityType, idValue, entity);
+            for (int i = 0; i < cursorColumns.length; i++) {
+                Column column = i == idIndex ? table.id : cursorColumns[i];
+                if (column == null) continue;
+                if (reset && cursor.isNull(i) && column.getDefaultValue() == null) {
+                    column.resetValue2Entity(entity);
+                } else {
+                    column.setValue2Entity(entity, cursor, i);
+                }
+            }
+
+            // init finder
+            for (Finder finder : table.finderMap.values()) {
+                finder.setValue2Entity(entity, null, 0);
+            }
+        } finally {
+            session.end();
+        }
+        return entity;
+    }
+}
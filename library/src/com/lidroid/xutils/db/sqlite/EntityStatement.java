@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.lidroid.xutils.db.table.Column;
+import com.lidroid.xutils.db.table.Finder;
+import com.lidroid.xutils.db.table.Id;
+import com.lidroid.xutils.db.table.Table;
+import com.lidroid.xutils.exception.DbException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * A compiled "insert", "replace" or "update by id" statement of a table,
+ * the values of an entity are bound to it without building the sql again.
+ * <p/>
+ * The binding values are the same as the SqlInfo of SqlInfoBuilder.
+ */
+public class EntityStatement {
+
+    private static final int INSERT = 0;
+    private static final int REPLACE = 1;
+    private static final int UPDATE = 2;
+
+    private final String sql;
+    private final int operation;
+    private final Table table;
+    private final Column[] columns; // binding order, the id is bound after them for update
+    private SQLiteStatement statement;
+
+    private EntityStatement(String sql, int operation, Table table, Column[] columns) {
+        this.sql = sql;
+        this.operation = operation;
+        this.table = table;
+        this.columns = columns;
+    }
+
+    /**
+     * @return the key of the statement in the statement cache of DbUtils.
+     */
+    public static String buildInsertKey(Table table, boolean replace) {
+        return (replace ? "REPLACE#" : "INSERT#") + table.tableName;
+    }
+
+    /**
+     * @return the key of the statement in the statement cache of DbUtils.
+     */
+    public static String buildUpdateKey(Table table, String... updateColumnNames) {
+        StringBuilder sb = new StringBuilder("UPDATE#").append(table.tableName);
+        if (updateColumnNames != null) {
+            for (String columnName : updateColumnNames) {
+                sb.append('#').append(columnName);
+            }
+        }
+        return sb.toString();
+    }
+
+    public static EntityStatement buildInsert(Table table, boolean replace) {
+        ArrayList<Column> columnList = new ArrayList<Column>();
+        Id id = table.id;
+        if (!id.isAutoIncrement()) {
+            columnList.add(id);
+        }
+        for (Column column : table.columnMap.values()) {
+            if (column instanceof Finder || column.getColumnName() == null) {
+                continue;
+            }
+            columnList.add(column);
+        }
+        if (columnList.size() == 0) return null;
+
+        StringBuilder sqlBuilder = new StringBuilder(replace ? "REPLACE INTO " : "INSERT INTO ");
+        sqlBuilder.append(table.tableName).append(" (");
+        for (Column column : columnList) {
+            sqlBuilder.append(column.getColumnName()).append(",");
+        }
+        sqlBuilder.deleteCharAt(sqlBuilder.length() - 1);
+        sqlBuilder.append(") VALUES (");
+        for (int i = 0; i < columnList.size(); i++) {
+            sqlBuilder.append("?,");
+        }
+        sqlBuilder.deleteCharAt(sqlBuilder.length() - 1);
+        sqlBuilder.append(")");
+
+        return new EntityStatement(sqlBuilder.toString(), replace ? REPLACE : INSERT,
+                table, columnList.toArray(new Column[columnList.size()]));
+    }
+
+    /**
+     * @param updateColumnNames null or empty for all the columns.
+     */
+    public static EntityStatement buildUpdate(Table table, String... updateColumnNames) {
+        HashSet<String> updateColumnNameSet = null;
+        if (updateColumnNames != null && updateColumnNames.length > 0) {
+            updateColumnNameSet = new HashSet<String>(updateColumnNames.length);
+            Collections.addAll(updateColumnNameSet, updateColumnNames);
+        }
+
+        ArrayList<Column> columnList = new ArrayList<Column>();
+        Id id = table.id;
+        if (!id.isAutoIncrement()) {
+            columnList.add(id);
+        }
+        for (Column column : table.columnMap.values()) {
+            if (column instanceof Finder || column.getColumnName() == null) {
+                continue;
+            }
+            columnList.add(column);
+        }
+        if (updateColumnNameSet != null) {
+            for (int i = columnList.size() - 1; i >= 0; i--) {
+                if (!updateColumnNameSet.contains(columnList.get(i).getColumnName())) {
+                    columnList.remove(i);
+                }
+            }
+        }
+        if (columnList.size() == 0) return null;
+
+        StringBuilder sqlBuilder = new StringBuilder("UPDATE ");
+        sqlBuilder.append(table.tableName).append(" SET ");
+        for (Column column : columnList) {
+            sqlBuilder.append(column.getColumnName()).append("=?,");
+        }
+        sqlBuilder.deleteCharAt(sqlBuilder.length() - 1);
+        sqlBuilder.append(" WHERE ").append(id.getColumnName()).append("=?");
+
+        return new EntityStatement(sqlBuilder.toString(), UPDATE,
+                table, columnList.toArray(new Column[columnList.size()]));
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Bind the values of the entity and execute the statement.
+     *
+     * @return the row id of the inserted row, -1 if failed (always -1 for update).
+     */
+    public synchronized long execute(SQLiteDatabase database, Object entity) throws DbException {
+        Object idValue = null;
+        if (operation == UPDATE) {
+            idValue = table.id.getColumnValue(entity);
+            if (idValue == null) {
+                throw new DbException("this entity[" + entity.getClass() + "]'s id value is null");
+            }
+        }
+
+        try {
+            if (statement == null) {
+                statement = database.compileStatement(sql);
+            }
+            statement.clearBindings();
+            int index = 1;
+            for (Column column : columns) {
+                if (column.bindColumnValue(entity, statement, index)) {
+                    index++;
+                    continue;
+                }
+                Object value = column.getColumnValue(entity);
+                if (value == null && !(column instanceof Id)) {
+                    value = column.getDefaultValue();
+                }
+                bind(statement, index++, value);
+            }
+            if (operation == UPDATE) {
+                bind(statement, index, idValue);
+                statement.execute();
+                return -1;
+            } else {
+                return statement.executeInsert();
+            }
+        } catch (Throwable e) {
+            throw new DbException(e);
+        }
+    }
+
+    public synchronized void close() {
+        if (statement != null) {
+            statement.close();
+            statement = null;
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof Double || value instanceof Float) {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            statement.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            statement.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else {
+            statement.bindString(index, value.toString());
+        }
+    }
+}
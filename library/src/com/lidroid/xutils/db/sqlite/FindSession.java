@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.sqlite;
+
+import com.lidroid.xutils.db.table.Column;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The scope of a find of DbUtils on the current thread, including the finds of the Foreign and Finder
+ * columns started while its rows are read.
+ * <p/>
+ * In the scope an entity is read once by type and id (identity map), so the relations which refer back
+ * to an entity being read get the same instance instead of reading it again, and a repeated sql
+ * gets the same result.
+ * <pre>
+ * FindSession session = FindSession.begin();
+ * try {
+ *     ...
+ * } finally {
+ *     session.end();
+ * }
+ * </pre>
+ */
+public final class FindSession {
+
+    private static final ThreadLocal<FindSession> currentSession = new ThreadLocal<FindSession>();
+
+    private int depth = 0;
+
+    /**
+     * key: entityType, value: (key: id value, value: entity)
+     */
+    private final HashMap<Class<?>, HashMap<Object, Object>> entityMap = new HashMap<Class<?>, HashMap<Object, Object>>();
+
+    /**
+     * key: sql and bind args, value: find result
+     */
+    private final HashMap<Object, Object> resultMap = new HashMap<Object, Object>();
+
+    /**
+     * the Foreign and Finder columns loaded at the end of the find (Selector.with(...))
+     */
+    private final HashSet<Column> deferredColumns = new HashSet<Column>();
+
+    /**
+     * key: deferred column, value: the entities waiting for the column
+     */
+    private LinkedHashMap<Column, List<PendingRelation>> pendingRelations;
+
+    private FindSession() {
+    }
+
+    /**
+     * Start a session, or join the session of the find in progress on the current thread.
+     * Every begin() must be followed by an end().
+     */
+    public static FindSession begin() {
+        FindSession session = currentSession.get();
+        if (session == null) {
+            session = new FindSession();
+            currentSession.set(session);
+        }
+        session.depth++;
+        return session;
+    }
+
+    /**
+     * @return the session of the current thread, null if none.
+     */
+    public static FindSession current() {
+        return currentSession.get();
+    }
+
+    public void end() {
+        if (--depth == 0) {
+            currentSession.remove();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getEntity(Class<T> entityType, Object idValue) {
+        HashMap<Object, Object> entities = entityMap.get(entityType);
+        return entities == null ? null : (T) entities.get(idValue);
+    }
+
+    public void putEntity(Class<?> entityType, Object idValue, Object entity) {
+        if (idValue == null || entity == null) return;
+        HashMap<Object, Object> entities = entityMap.get(entityType);
+        if (entities == null) {
+            entities = new HashMap<Object, Object>();
+            entityMap.put(entityType, entities);
+        }
+        entities.put(idValue, entity);
+    }
+
+    public Object getResult(SqlInfo sqlInfo) {
+        return resultMap.get(getResultKey(sqlInfo));
+    }
+
+    public void putResult(SqlInfo sqlInfo, Object result) {
+        if (sqlInfo.getSql() != null && result != null) {
+            resultMap.put(getResultKey(sqlInfo), result);
+        }
+    }
+
+    // the sql, or a list of the sql and the bind args
+    private static Object getResultKey(SqlInfo sqlInfo) {
+        List<Object> bindArgs = sqlInfo.getBindArgs();
+        if (bindArgs == null || bindArgs.isEmpty()) {
+            return sqlInfo.getSql();
+        }
+        ArrayList<Object> key = new ArrayList<Object>(bindArgs.size() + 1);
+        key.add(sqlInfo.getSql());
+        key.addAll(bindArgs);
+        return key;
+    }
+
+    public void deferRelations(Collection<Column> columns) {
+        deferredColumns.addAll(columns);
+    }
+
+    public void undeferRelations(Collection<Column> columns) {
+        deferredColumns.removeAll(columns);
+    }
+
+    /**
+     * Called by a Foreign or Finder column instead of finding its value if the column is deferred.
+     *
+     * @param keyValue the column value of the Foreign, or the value column of the Finder.
+     * @return false if the column is not deferred.
+     */
+    public boolean deferRelation(Column column, Object entity, Object keyValue) {
+        if (!deferredColumns.contains(column)) return false;
+        if (pendingRelations == null) {
+            pendingRelations = new LinkedHashMap<Column, List<PendingRelation>>();
+        }
+        List<PendingRelation> pendings = pendingRelations.get(column);
+        if (pendings == null) {
+            pendings = new ArrayList<PendingRelation>();
+            pendingRelations.put(column, pendings);
+        }
+        pendings.add(new PendingRelation(entity, keyValue));
+        return true;
+    }
+
+    /**
+     * @return the relations deferred since the last poll, null if none.
+     */
+    /* package */ LinkedHashMap<Column, List<PendingRelation>> pollPendingRelations() {
+        LinkedHashMap<Column, List<PendingRelation>> result = pendingRelations;
+        pendingRelations = null;
+        return result;
+    }
+
+    /* package */ static class PendingRelation {
+        final Object entity;
+        final Object keyValue;
+
+        PendingRelation(Object entity, Object keyValue) {
+            this.entity = entity;
+            this.keyValue = keyValue;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.sqlite;
+
+import android.database.Cursor;
+
+import com.lidroid.xutils.DbUtils;
+import com.lidroid.xutils.db.table.Table;
+import com.lidroid.xutils.exception.DbException;
+import com.lidroid.xutils.util.IOUtils;
+import com.lidroid.xutils.util.LogUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The "EXPLAIN QUERY PLAN" of the sql of a Selector, for debugging:
+ * a full scan of the table is logged with the where columns which are not the first column of an index.
+ * <pre>
+ * db.explainQueryPlan(Selector.from(User.class).where("email", "=", email)).log();
+ * // or for all the finds:
+ * db.configExplainQueryPlan(true);
+ * </pre>
+ */
+public class QueryPlan {
+
+    private final String sql;
+    private final List<String> details;
+    private final boolean fullScan;
+    private final List<String> missingIndexColumns;
+    private final String tableName;
+
+    private QueryPlan(String sql, List<String> details, boolean fullScan,
+                      List<String> missingIndexColumns, String tableName) {
+        this.sql = sql;
+        this.details = details;
+        this.fullScan = fullScan;
+        this.missingIndexColumns = missingIndexColumns;
+        this.tableName = tableName;
+    }
+
+    public static QueryPlan explain(DbUtils db, Selector selector) throws DbException {
+        SqlInfo sqlInfo = selector.toSqlInfo();
+        SqlInfo explainSqlInfo = new SqlInfo("EXPLAIN QUERY PLAN " + sqlInfo.getSql());
+        if (sqlInfo.getBindArgs() != null) {
+            for (Object arg : sqlInfo.getBindArgs()) {
+                explainSqlInfo.addBindArgWithoutConverter(arg);
+            }
+        }
+
+        List<String> details = new ArrayList<String>();
+        boolean fullScan = false;
+        Cursor cursor = db.execQuery(explainSqlInfo);
+        if (cursor != null) {
+            try {
+                int detailIndex = cursor.getColumnIndex("detail");
+                if (detailIndex < 0) {
+                    detailIndex = cursor.getColumnCount() - 1;
+                }
+                while (cursor.moveToNext()) {
+                    String detail = cursor.getString(detailIndex);
+                    details.add(detail);
+                    // "SCAN TABLE user" or "SCAN user", not "SCAN TABLE user USING INDEX ..."
+                    String upperDetail = detail.toUpperCase(Locale.US);
+                    if (upperDetail.startsWith("SCAN") && !upperDetail.contains(" INDEX")) {
+                        fullScan = true;
+                    }
+                }
+            } catch (Throwable e) {
+                throw new DbException(e);
+            } finally {
+                IOUtils.closeQuietly(cursor);
+            }
+        }
+
+        List<String> missingIndexColumns = new ArrayList<String>();
+        if (fullScan && selector.whereBuilder != null) {
+            Table table = Table.get(db, selector.getEntityType());
+            HashSet<String> indexedColumns = getFirstIndexColumns(db, selector.tableName);
+            indexedColumns.add(table.id.getColumnName());
+            for (String columnName : new LinkedHashSet<String>(selector.whereBuilder.getColumnNames())) {
+                if (!indexedColumns.contains(columnName)) {
+                    missingIndexColumns.add(columnName);
+                }
+            }
+        }
+
+        return new QueryPlan(sqlInfo.getSql(), details, fullScan, missingIndexColumns, selector.tableName);
+    }
+
+    /**
+     * @return the first column of every index of the table.
+     */
+    private static HashSet<String> getFirstIndexColumns(DbUtils db, String tableName) throws DbException {
+        List<String> indexNames = new ArrayList<String>();
+        Cursor cursor = db.execQuery("PRAGMA index_list(\"" + tableName + "\")");
+        if (cursor != null) {
+            try {
+                int nameIndex = cursor.getColumnIndex("name");
+                while (cursor.moveToNext()) {
+                    indexNames.add(cursor.getString(nameIndex));
+                }
+            } catch (Throwable e) {
+                throw new DbException(e);
+            } finally {
+                IOUtils.closeQuietly(cursor);
+            }
+        }
+
+        HashSet<String> result = new HashSet<String>();
+        for (String indexName : indexNames) {
+            cursor = db.execQuery("PRAGMA index_info(\"" + indexName + "\")");
+            if (cursor != null) {
+                try {
+                    int seqIndex = cursor.getColumnIndex("seqno");
+                    int nameIndex = cursor.getColumnIndex("name");
+                    while (cursor.moveToNext()) {
+                        if (cursor.getInt(seqIndex) == 0) {
+                            result.add(cursor.getString(nameIndex));
+                        }
+                    }
+                } catch (Throwable e) {
+                    throw new DbException(e);
+                } finally {
+                    IOUtils.closeQuietly(cursor);
+                }
+            }
+        }
+        return result;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the "detail" of every row of the plan.
+     */
+    public List<String> getDetails() {
+        return details;
+    }
+
+    /**
+     * @return true if a table is scanned without an index.
+     */
+    public boolean isFullScan() {
+        return fullScan;
+    }
+
+    /**
+     * @return the where columns which are not the first column of an index, empty if not a full scan.
+     */
+    public List<String> getMissingIndexColumns() {
+        return missingIndexColumns;
+    }
+
+    /**
+     * @return e.g. "@Index on email" or "@CompositeIndex("state,priority")", null if none.
+     */
+    public String getSuggestion() {
+        if (missingIndexColumns.isEmpty()) return null;
+        if (missingIndexColumns.size() == 1) {
+            return "@Index on " + missingIndexColumns.get(0);
+        }
+        StringBuilder sb = new StringBuilder("@CompositeIndex(\"");
+        for (int i = 0; i < missingIndexColumns.size(); i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(missingIndexColumns.get(i));
+        }
+        return sb.append("\")").toString();
+    }
+
+    /**
+     * Log a full scan as a warning with the suggestion, the other plans as debug.
+     */
+    public void log() {
+        if (fullScan) {
+            String suggestion = getSuggestion();
+            LogUtils.w("full scan of " + tableName + ": " + sql + " " + details
+                    + (suggestion == null ? "" : ", add " + suggestion));
+        } else {
+            LogUtils.d("query plan: " + sql + " " + details);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + details;
+    }
+}
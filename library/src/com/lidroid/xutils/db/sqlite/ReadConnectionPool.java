@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+
+import com.lidroid.xutils.util.LogUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only connections of a WAL database, the queries on them run beside the writer connection
+ * and do not wait for its transactions (they read the last committed data).
+ * <p/>
+ * Only for API 11 to 15: since API 16 the SQLiteDatabase in WAL mode runs the queries concurrently
+ * on its own pool of connections, extra connections would only add their page caches and miss
+ * the statement cache of the database, see {@link #isFrameworkPoolConcurrent()}.
+ * <p/>
+ * A SQLiteDatabase serializes its own queries, a query takes a connection no other thread is using,
+ * or the next one round robin if all of them are busy.
+ */
+public class ReadConnectionPool {
+
+    private static final int JELLY_BEAN = 16; // Build.VERSION_CODES.JELLY_BEAN
+
+    private final SQLiteDatabase[] connections;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private ReadConnectionPool(SQLiteDatabase[] connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * @param path the path of a database in WAL mode.
+     * @return null if a connection can not be opened.
+     */
+    public static ReadConnectionPool open(String path, int size) {
+        SQLiteDatabase[] connections = new SQLiteDatabase[Math.max(size, 1)];
+        try {
+            for (int i = 0; i < connections.length; i++) {
+                connections[i] = SQLiteDatabase.openDatabase(path, null,
+                        SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+            }
+            return new ReadConnectionPool(connections);
+        } catch (Throwable e) {
+            LogUtils.e(e.getMessage(), e);
+            close(connections);
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the queries of a WAL database already run concurrently on the connections
+     * of the framework (API 16+), no ReadConnectionPool is needed.
+     */
+    public static boolean isFrameworkPoolConcurrent() {
+        return Build.VERSION.SDK_INT >= JELLY_BEAN;
+    }
+
+    /**
+     * SQLiteDatabase.enableWriteAheadLogging() of API 11, by reflection for the lower build target.
+     *
+     * @return false if WAL is not supported or not enabled.
+     */
+    public static boolean enableWriteAheadLogging(SQLiteDatabase database) {
+        try {
+            Method method = SQLiteDatabase.class.getMethod("enableWriteAheadLogging");
+            return Boolean.TRUE.equals(method.invoke(database));
+        } catch (NoSuchMethodException e) {
+            return false;
+        } catch (Throwable e) {
+            LogUtils.e(e.getMessage(), e);
+            return false;
+        }
+    }
+
+    // isDbLockedByOtherThreads() is deprecated since API 16, the pool is only used before.
+    @SuppressWarnings("deprecation")
+    public SQLiteDatabase get() {
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < connections.length; i++) {
+            SQLiteDatabase connection = connections[(start + i) % connections.length];
+            if (!connection.isDbLockedByOtherThreads()) {
+                return connection;
+            }
+        }
+        return connections[start % connections.length];
+    }
+
+    public int size() {
+        return connections.length;
+    }
+
+    public void close() {
+        close(connections);
+    }
+
+    private static void close(SQLiteDatabase[] connections) {
+        for (SQLiteDatabase connection : connections) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Throwable e) {
+                    LogUtils.e(e.getMessage(), e);
+                }
+            }
+        }
+    }
+}
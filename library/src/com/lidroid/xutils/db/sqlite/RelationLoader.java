@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.sqlite;
+
+import com.lidroid.xutils.DbUtils;
+import com.lidroid.xutils.db.table.Column;
+import com.lidroid.xutils.db.table.ColumnUtils;
+import com.lidroid.xutils.db.table.Finder;
+import com.lidroid.xutils.db.table.Foreign;
+import com.lidroid.xutils.db.table.Table;
+import com.lidroid.xutils.exception.DbException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the Foreign and Finder columns of Selector.with(...) for all the entities of a find,
+ * one "WHERE target IN (...)" query for every chunk of the key values instead of a query for every entity.
+ */
+public final class RelationLoader {
+
+    /**
+     * the key values of an "IN (...)" query, under the 999 variables of sqlite
+     */
+    private static final int IN_CHUNK_SIZE = 500;
+
+    private RelationLoader() {
+    }
+
+    /**
+     * @return the Foreign and Finder columns of selector.with(...), empty if none.
+     * @throws DbException if a name is not a Foreign or Finder column of the entity.
+     */
+    public static List<Column> getRelationColumns(DbUtils db, Selector selector) throws DbException {
+        String[] names = selector.getWithColumnNames();
+        if (names == null || names.length == 0) return Collections.emptyList();
+
+        Table table = Table.get(db, selector.getEntityType());
+        List<Column> result = new ArrayList<Column>(names.length);
+        for (String name : names) {
+            Column column = table.columnMap.get(name);
+            if (column == null) {
+                for (Column c : table.columnMap.values()) {
+                    if (c.getColumnField().getName().equals(name)) {
+                        column = c;
+                        break;
+                    }
+                }
+            }
+            if (!(column instanceof Foreign) && !(column instanceof Finder)) {
+                throw new DbException(name + " is not a Foreign or Finder column of " + table.tableName);
+            }
+            result.add(column);
+        }
+        return result;
+    }
+
+    /**
+     * Load the relations deferred in the session, including the ones deferred again
+     * by the entities loaded here (e.g. a tree of the same type).
+     */
+    public static void loadDeferredRelations(DbUtils db, FindSession session) throws DbException {
+        Map<Column, List<FindSession.PendingRelation>> pendingRelations;
+        while ((pendingRelations = session.pollPendingRelations()) != null) {
+            for (Map.Entry<Column, List<FindSession.PendingRelation>> entry : pendingRelations.entrySet()) {
+                load(db, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void load(DbUtils db, Column column, List<FindSession.PendingRelation> pendings) throws DbException {
+        Class<?> targetType;
+        String targetColumnName;
+        if (column instanceof Foreign) {
+            targetType = ((Foreign) column).getForeignEntityType();
+            targetColumnName = ((Foreign) column).getForeignColumnName();
+        } else {
+            targetType = ((Finder) column).getTargetEntityType();
+            targetColumnName = ((Finder) column).getTargetColumnName();
+        }
+
+        // the target table does not exist, the same as a find of every entity
+        if (!db.tableIsExist(targetType)) {
+            for (FindSession.PendingRelation pending : pendings) {
+                setLoadedValue2Entity(column, pending.entity, null);
+            }
+            return;
+        }
+
+        LinkedHashSet<Object> keyValues = new LinkedHashSet<Object>();
+        for (FindSession.PendingRelation pending : pendings) {
+            Object keyValue = normalizeKeyValue(pending.keyValue);
+            if (keyValue != null) {
+                keyValues.add(keyValue);
+            }
+        }
+
+        Table targetTable = Table.get(db, targetType);
+        Column targetColumn = targetTable.id.getColumnName().equals(targetColumnName) ?
+                targetTable.id : targetTable.columnMap.get(targetColumnName);
+
+        // key: target column value, value: the target entities
+        HashMap<Object, List<Object>> targetMap = new HashMap<Object, List<Object>>();
+        List<Object> chunk = new ArrayList<Object>(Math.min(keyValues.size(), IN_CHUNK_SIZE));
+        for (Object keyValue : keyValues) {
+            chunk.add(keyValue);
+            if (chunk.size() == IN_CHUNK_SIZE) {
+                findTargets(db, targetType, targetColumnName, targetColumn, chunk, targetMap);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            findTargets(db, targetType, targetColumnName, targetColumn, chunk, targetMap);
+        }
+
+        for (FindSession.PendingRelation pending : pendings) {
+            List<Object> targets = targetMap.get(normalizeKeyValue(pending.keyValue));
+            // every entity gets its own list
+            setLoadedValue2Entity(column, pending.entity,
+                    targets == null ? new ArrayList<Object>(0) : new ArrayList<Object>(targets));
+        }
+    }
+
+    private static void findTargets(DbUtils db, Class<?> targetType, String targetColumnName, Column targetColumn,
+                                    List<Object> keyValues, HashMap<Object, List<Object>> targetMap) throws DbException {
+        List<?> targets = db.findAll(Selector.from(targetType).where(targetColumnName, "IN", keyValues));
+        if (targets == null || targetColumn == null) return;
+        for (Object target : targets) {
+            Object keyValue = normalizeKeyValue(targetColumn.getColumnValue(target));
+            List<Object> list = targetMap.get(keyValue);
+            if (list == null) {
+                list = new ArrayList<Object>(1);
+                targetMap.put(keyValue, list);
+            }
+            list.add(target);
+        }
+    }
+
+    private static void setLoadedValue2Entity(Column column, Object entity, List<?> loadedEntities) {
+        if (column instanceof Foreign) {
+            ((Foreign) column).setLoadedValue2Entity(entity, loadedEntities);
+        } else {
+            ((Finder) column).setLoadedValue2Entity(entity, loadedEntities);
+        }
+    }
+
+    /**
+     * the key values read from the cursor and from the entities may be Integer or Long for the same column
+     */
+    private static Object normalizeKeyValue(Object value) {
+        value = ColumnUtils.convert2DbColumnValueIfNeeded(value);
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+}
@@ -34,6 +34,7 @@ public class Selector {
     protected List<OrderBy> orderByList;
     protected int limit = 0;
     protected int offset = 0;
+    protected String[] withColumnNames;
 
     private Selector(Class<?> entityType) {
         this.entityType = entityType;
@@ -60,7 +61,7 @@ public class Selector {
     }
 
     public Selector and(WhereBuilder where) {
-        this.whereBuilder.expr("AND (" + where.toString() + ")");
+        this.whereBuilder.expr("AND", where);
         return this;
     }
 
@@ -70,7 +71,7 @@ public class Selector {
     }
 
     public Selector or(WhereBuilder where) {
-        this.whereBuilder.expr("OR (" + where.toString() + ")");
+        this.whereBuilder.expr("OR", where);
         return this;
     }
 
@@ -124,6 +125,43 @@ public class Selector {
         return this;
     }
 
+    /**
+     * Load the Foreign and Finder columns (the column name of a Foreign, or the field name) of all
+     * the entities found by findAll(...) at once, with a few "IN (...)" queries
+     * instead of the queries of every entity.
+     * The lazy loader columns are still loaded lazily.
+     */
+    public Selector with(String... columnNames) {
+        this.withColumnNames = columnNames;
+        return this;
+    }
+
+    public String[] getWithColumnNames() {
+        return withColumnNames;
+    }
+
+    /**
+     * @return the sql with "?" for the values of the where clause, and the values as bind args.
+     * The queries which differ in the values only have the same sql, sqlite reuses the compiled statement.
+     */
+    public SqlInfo toSqlInfo() {
+        SqlInfo result = new SqlInfo();
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT ");
+        sql.append("*");
+        sql.append(" FROM ").append(tableName);
+        if (whereBuilder != null && whereBuilder.getWhereItemSize() > 0) {
+            sql.append(" WHERE ");
+            whereBuilder.appendTemplate(sql, result);
+        }
+        appendOrderByAndLimit(sql);
+        result.setSql(sql.toString());
+        return result;
+    }
+
+    /**
+     * @return the sql with the values inlined.
+     */
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
@@ -133,16 +171,20 @@ public class Selector {
         if (whereBuilder != null && whereBuilder.getWhereItemSize() > 0) {
             result.append(" WHERE ").append(whereBuilder.toString());
         }
+        appendOrderByAndLimit(result);
+        return result.toString();
+    }
+
+    /* package */ void appendOrderByAndLimit(StringBuilder sb) {
         if (orderByList != null) {
             for (int i = 0; i < orderByList.size(); i++) {
-                result.append(" ORDER BY ").append(orderByList.get(i).toString());
+                sb.append(i == 0 ? " ORDER BY " : ", ").append(orderByList.get(i).toString());
             }
         }
         if (limit > 0) {
-            result.append(" LIMIT ").append(limit);
-            result.append(" OFFSET ").append(offset);
+            sb.append(" LIMIT ").append(limit);
+            sb.append(" OFFSET ").append(offset);
         }
-        return result.toString();
     }
 
     public Class<?> getEntityType() {
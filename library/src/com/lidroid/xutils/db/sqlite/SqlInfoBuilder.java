@@ -16,13 +16,15 @@
 package com.lidroid.xutils.db.sqlite;
 
 import com.lidroid.xutils.DbUtils;
+import com.lidroid.xutils.db.annotation.CompositeIndex;
+import com.lidroid.xutils.db.annotation.Index;
 import com.lidroid.xutils.db.table.*;
 import com.lidroid.xutils.exception.DbException;
 
 import java.util.*;
 
 /**
- * Build "insert", "replace",，"update", "delete" and "create" sql.
+ * Build "insert", "replace",，"update", "delete", "create" and "create index" sql.
  */
 public class SqlInfoBuilder {
 
@@ -257,6 +259,51 @@ public class SqlInfoBuilder {
         return new SqlInfo(sqlBuffer.toString());
     }
 
+    /**
+     * The indexes of the Index columns and of the CompositeIndex of the entity,
+     * "IF NOT EXISTS", so they can be run on an existing table too (e.g. after an upgrade).
+     */
+    public static List<SqlInfo> buildCreateIndexSqlInfos(DbUtils db, Class<?> entityType) throws DbException {
+        Table table = Table.get(db, entityType);
+        List<SqlInfo> result = new ArrayList<SqlInfo>();
+
+        for (Column column : table.columnMap.values()) {
+            if (column instanceof Finder) continue;
+            Index index = ColumnUtils.getIndex(column.getColumnField());
+            if (index != null) {
+                String name = index.name();
+                if (name.length() == 0) {
+                    name = "index_" + table.tableName + "_" + column.getColumnName();
+                }
+                result.add(buildCreateIndexSqlInfo(table.tableName, name, index.unique(), "\"" + column.getColumnName() + "\""));
+            }
+        }
+
+        CompositeIndex compositeIndex = TableUtils.getCompositeIndex(entityType);
+        if (compositeIndex != null) {
+            for (String columns : compositeIndex.value()) {
+                StringBuilder name = new StringBuilder("index_").append(table.tableName);
+                for (String column : columns.split(",")) {
+                    String columnName = column.trim();
+                    int space = columnName.indexOf(' '); // "column DESC"
+                    name.append("_").append(space < 0 ? columnName : columnName.substring(0, space));
+                }
+                result.add(buildCreateIndexSqlInfo(table.tableName, name.toString(), compositeIndex.unique(), columns));
+            }
+        }
+        return result;
+    }
+
+    private static SqlInfo buildCreateIndexSqlInfo(String tableName, String indexName, boolean unique, String columns) {
+        StringBuilder sb = new StringBuilder("CREATE ");
+        if (unique) {
+            sb.append("UNIQUE ");
+        }
+        sb.append("INDEX IF NOT EXISTS \"").append(indexName).append("\" ON ").append(tableName);
+        sb.append(" (").append(columns).append(")");
+        return new SqlInfo(sb.toString());
+    }
+
     /**
      * 封装属性键值对
      */
@@ -21,7 +21,6 @@ import com.lidroid.xutils.db.table.ColumnUtils;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -31,10 +30,26 @@ import java.util.List;
  */
 public class WhereBuilder {
 
+    /**
+     * the values are bound while the variables of a statement are under the limit of sqlite (999),
+     * the others are inlined
+     */
+    /* package */ static final int MAX_BIND_ARGS = 999;
+
     private final List<String> whereItems;
 
+    // the items with "?" for the values, and the values
+    private final List<String> templateItems;
+    private final List<Object> bindArgs;
+
+    // the columns of the conditions, not of the exprs
+    private final List<String> columnNames;
+
     private WhereBuilder() {
         this.whereItems = new ArrayList<String>();
+        this.templateItems = new ArrayList<String>();
+        this.bindArgs = new ArrayList<Object>();
+        this.columnNames = new ArrayList<String>(2);
     }
 
     /**
@@ -88,6 +103,7 @@ public class WhereBuilder {
 
     public WhereBuilder expr(String expr) {
         whereItems.add(" " + expr);
+        templateItems.add(" " + expr);
         return this;
     }
 
@@ -96,23 +112,77 @@ public class WhereBuilder {
         return this;
     }
 
+    /**
+     * add "conj (where)", the values of where are still bound.
+     */
+    /* package */ WhereBuilder expr(String conj, WhereBuilder where) {
+        whereItems.add(" " + conj + " (" + where.toString() + ")");
+        columnNames.addAll(where.columnNames);
+        if (bindArgs.size() + where.bindArgs.size() <= MAX_BIND_ARGS) {
+            templateItems.add(" " + conj + " (" + where.toTemplate() + ")");
+            bindArgs.addAll(where.bindArgs);
+        } else {
+            templateItems.add(" " + conj + " (" + where.toString() + ")");
+        }
+        return this;
+    }
+
     public int getWhereItemSize() {
         return whereItems.size();
     }
 
+    /**
+     * @return the where clause with "?" for the values, the values are getBindArgs().
+     * The same conditions with other values get the same template, and sqlite can reuse the compiled statement.
+     */
+    public String toTemplate() {
+        return join(templateItems);
+    }
+
+    public List<Object> getBindArgs() {
+        return bindArgs;
+    }
+
+    /**
+     * @return the column names of the conditions in order, e.g. to find a missing index.
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Append the template of the where clause to sb, and its values to sqlInfo.
+     */
+    /* package */ void appendTemplate(StringBuilder sb, SqlInfo sqlInfo) {
+        for (String item : templateItems) {
+            sb.append(item);
+        }
+        for (Object arg : bindArgs) {
+            sqlInfo.addBindArgWithoutConverter(arg);
+        }
+    }
+
+    /**
+     * @return the where clause with the values inlined.
+     */
     @Override
     public String toString() {
-        if (whereItems.size() == 0) {
+        return join(whereItems);
+    }
+
+    private static String join(List<String> items) {
+        if (items.size() == 0) {
             return "";
         }
         StringBuilder sb = new StringBuilder();
-        for (String item : whereItems) {
+        for (String item : items) {
             sb.append(item);
         }
         return sb.toString();
     }
 
     private void appendCondition(String conj, String columnName, String op, Object value) {
+        columnNames.add(columnName);
         StringBuilder sqlSb = new StringBuilder();
 
         if (whereItems.size() > 0) {
@@ -143,97 +213,84 @@ public class WhereBuilder {
             } else {
                 sqlSb.append(" " + op + " NULL");
             }
-        } else {
-            sqlSb.append(" " + op + " ");
-
-            if ("IN".equalsIgnoreCase(op)) {
-                Iterable<?> items = null;
-                if (value instanceof Iterable) {
-                    items = (Iterable<?>) value;
-                } else if (value.getClass().isArray()) {
-                    ArrayList<Object> arrayList = new ArrayList<Object>();
-                    int len = Array.getLength(value);
-                    for (int i = 0; i < len; i++) {
-                        arrayList.add(Array.get(value, i));
-                    }
-                    items = arrayList;
-                }
-                if (items != null) {
-                    StringBuffer stringBuffer = new StringBuffer("(");
-                    for (Object item : items) {
-                        Object itemColValue = ColumnUtils.convert2DbColumnValueIfNeeded(item);
-                        if (ColumnDbType.TEXT.equals(ColumnConverterFactory.getDbColumnType(itemColValue.getClass()))) {
-                            String valueStr = itemColValue.toString();
-                            if (valueStr.indexOf('\'') != -1) { // convert single quotations
-                                valueStr = valueStr.replace("'", "''");
-                            }
-                            stringBuffer.append("'" + valueStr + "'");
-                        } else {
-                            stringBuffer.append(itemColValue);
-                        }
-                        stringBuffer.append(",");
-                    }
-                    stringBuffer.deleteCharAt(stringBuffer.length() - 1);
-                    stringBuffer.append(")");
-                    sqlSb.append(stringBuffer.toString());
-                } else {
-                    throw new IllegalArgumentException("value must be an Array or an Iterable.");
-                }
-            } else if ("BETWEEN".equalsIgnoreCase(op)) {
-                Iterable<?> items = null;
-                if (value instanceof Iterable) {
-                    items = (Iterable<?>) value;
-                } else if (value.getClass().isArray()) {
-                    ArrayList<Object> arrayList = new ArrayList<Object>();
-                    int len = Array.getLength(value);
-                    for (int i = 0; i < len; i++) {
-                        arrayList.add(Array.get(value, i));
-                    }
-                    items = arrayList;
-                }
-                if (items != null) {
-                    Iterator<?> iterator = items.iterator();
-                    if (!iterator.hasNext()) throw new IllegalArgumentException("value must have tow items.");
-                    Object start = iterator.next();
-                    if (!iterator.hasNext()) throw new IllegalArgumentException("value must have tow items.");
-                    Object end = iterator.next();
-
-                    Object startColValue = ColumnUtils.convert2DbColumnValueIfNeeded(start);
-                    Object endColValue = ColumnUtils.convert2DbColumnValueIfNeeded(end);
-
-                    if (ColumnDbType.TEXT.equals(ColumnConverterFactory.getDbColumnType(startColValue.getClass()))) {
-                        String startStr = startColValue.toString();
-                        if (startStr.indexOf('\'') != -1) { // convert single quotations
-                            startStr = startStr.replace("'", "''");
-                        }
-                        String endStr = endColValue.toString();
-                        if (endStr.indexOf('\'') != -1) { // convert single quotations
-                            endStr = endStr.replace("'", "''");
-                        }
-                        sqlSb.append("'" + startStr + "'");
-                        sqlSb.append(" AND ");
-                        sqlSb.append("'" + endStr + "'");
-                    } else {
-                        sqlSb.append(startColValue);
-                        sqlSb.append(" AND ");
-                        sqlSb.append(endColValue);
-                    }
-                } else {
-                    throw new IllegalArgumentException("value must be an Array or an Iterable.");
-                }
-            } else {
-                value = ColumnUtils.convert2DbColumnValueIfNeeded(value);
-                if (ColumnDbType.TEXT.equals(ColumnConverterFactory.getDbColumnType(value.getClass()))) {
-                    String valueStr = value.toString();
-                    if (valueStr.indexOf('\'') != -1) { // convert single quotations
-                        valueStr = valueStr.replace("'", "''");
-                    }
-                    sqlSb.append("'" + valueStr + "'");
-                } else {
-                    sqlSb.append(value);
+            whereItems.add(sqlSb.toString());
+            templateItems.add(sqlSb.toString());
+            return;
+        }
+
+        sqlSb.append(" " + op + " ");
+        StringBuilder templateSb = new StringBuilder(sqlSb);
+
+        List<Object> values;
+        if ("IN".equalsIgnoreCase(op)) {
+            values = getItems(value);
+            sqlSb.append("(");
+            templateSb.append("(");
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    sqlSb.append(",");
+                    templateSb.append(",");
                 }
+                appendValue(sqlSb, values.get(i));
+                templateSb.append("?");
             }
+            sqlSb.append(")");
+            templateSb.append(")");
+        } else if ("BETWEEN".equalsIgnoreCase(op)) {
+            List<Object> items = getItems(value);
+            if (items.size() < 2) throw new IllegalArgumentException("value must have tow items.");
+            values = items.subList(0, 2);
+            appendValue(sqlSb, values.get(0));
+            sqlSb.append(" AND ");
+            appendValue(sqlSb, values.get(1));
+            templateSb.append("? AND ?");
+        } else {
+            values = new ArrayList<Object>(1);
+            values.add(ColumnUtils.convert2DbColumnValueIfNeeded(value));
+            appendValue(sqlSb, values.get(0));
+            templateSb.append("?");
         }
+
         whereItems.add(sqlSb.toString());
+        if (bindArgs.size() + values.size() <= MAX_BIND_ARGS) {
+            templateItems.add(templateSb.toString());
+            bindArgs.addAll(values);
+        } else {
+            templateItems.add(sqlSb.toString());
+        }
+    }
+
+    /**
+     * @return the items of an Array or an Iterable, converted to the column values.
+     */
+    private static List<Object> getItems(Object value) {
+        ArrayList<Object> result = new ArrayList<Object>();
+        if (value instanceof Iterable) {
+            for (Object item : (Iterable<?>) value) {
+                result.add(ColumnUtils.convert2DbColumnValueIfNeeded(item));
+            }
+        } else if (value.getClass().isArray()) {
+            int len = Array.getLength(value);
+            for (int i = 0; i < len; i++) {
+                result.add(ColumnUtils.convert2DbColumnValueIfNeeded(Array.get(value, i)));
+            }
+        } else {
+            throw new IllegalArgumentException("value must be an Array or an Iterable.");
+        }
+        return result;
+    }
+
+    private static void appendValue(StringBuilder sb, Object colValue) {
+        if (colValue == null) {
+            sb.append("NULL");
+        } else if (ColumnDbType.TEXT.equals(ColumnConverterFactory.getDbColumnType(colValue.getClass()))) {
+            String valueStr = colValue.toString();
+            if (valueStr.indexOf('\'') != -1) { // convert single quotations
+                valueStr = valueStr.replace("'", "''");
+            }
+            sb.append("'").append(valueStr).append("'");
+        } else {
+            sb.append(colValue);
+        }
     }
 }
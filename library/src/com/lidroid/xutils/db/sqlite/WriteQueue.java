@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+
+import com.lidroid.xutils.exception.DbException;
+import com.lidroid.xutils.task.QuotaExecutor;
+import com.lidroid.xutils.task.TaskFuture;
+import com.lidroid.xutils.task.TaskScheduler;
+import com.lidroid.xutils.util.LogUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Write-behind queue of a database: the writes of all the threads are committed by one thread,
+ * in a transaction for every maxBatchSize writes or maxDelayMillis, instead of a transaction
+ * (and a sync of the journal) for every write.
+ * <p/>
+ * The future of a write is done when its transaction is committed. A failed write (e.g. a constraint)
+ * fails its own future only, sqlite rolls back its statement and the other writes are committed.
+ * The entity is read when the write is executed, not when it is queued.
+ * <p/>
+ * The batches are committed on a blocking executor of the default TaskScheduler, the worker
+ * only runs while writes are queued.
+ */
+public class WriteQueue {
+
+    public interface Write {
+        void execute() throws DbException;
+    }
+
+    private final SQLiteDatabase database;
+    private final Lock writeLock;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final QuotaExecutor executor = TaskScheduler.getDefault().newBlockingExecutor(1);
+
+    // the queuedCount after the last write of the thread
+    private final ThreadLocal<Long> lastQueuedOfThread = new ThreadLocal<Long>();
+
+    // guarded by this
+    private final ArrayList<Entry> pendingList = new ArrayList<Entry>();
+    private long firstPendingTime;
+    private long queuedCount = 0;
+    private long committedCount = 0;
+    private boolean flushRequested = false;
+    private boolean closed = false;
+    private boolean workerRunning = false;
+
+    /**
+     * @param writeLock held while a batch is committed, the lock of the writes out of the queue.
+     */
+    public WriteQueue(SQLiteDatabase database, Lock writeLock, int maxBatchSize, long maxDelayMillis) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.database = database;
+        this.writeLock = writeLock;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = Math.max(maxDelayMillis, 0);
+    }
+
+    public TaskFuture<Void> enqueue(Write write) {
+        TaskFuture<Void> future = new TaskFuture<Void>();
+        synchronized (this) {
+            if (closed) {
+                future.fail(new DbException("the write queue is closed"));
+                return future;
+            }
+            if (pendingList.isEmpty()) {
+                firstPendingTime = SystemClock.uptimeMillis();
+            }
+            pendingList.add(new Entry(write, future));
+            queuedCount++;
+            lastQueuedOfThread.set(queuedCount);
+            if (!workerRunning) {
+                workerRunning = true;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runWorker();
+                    }
+                });
+            }
+            this.notifyAll();
+        }
+        return future;
+    }
+
+    /**
+     * Commit the queued writes at once and wait for them.
+     */
+    public void flush() throws DbException {
+        long target;
+        synchronized (this) {
+            target = queuedCount;
+        }
+        flush(target);
+    }
+
+    /**
+     * @return true if a write queued by the current thread is not committed yet.
+     */
+    public boolean hasPendingWritesOfThread() {
+        Long target = lastQueuedOfThread.get();
+        if (target == null) return false;
+        synchronized (this) {
+            return committedCount < target;
+        }
+    }
+
+    /**
+     * Commit the writes queued by the current thread (and the ones queued before them) and wait for them,
+     * e.g. before a read of the thread. The writes of the other threads do not make it wait.
+     */
+    public void flushWritesOfThread() throws DbException {
+        Long target = lastQueuedOfThread.get();
+        if (target != null) {
+            flush(target);
+        }
+    }
+
+    // the writes are committed in the queued order, committedCount >= target when the target is committed.
+    private void flush(long target) throws DbException {
+        synchronized (this) {
+            if (committedCount >= target) return;
+            flushRequested = true;
+            this.notifyAll();
+            try {
+                while (committedCount < target) {
+                    this.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DbException(e);
+            }
+        }
+    }
+
+    /**
+     * Commit the queued writes and stop the worker, the writes queued after it fail.
+     */
+    public void close() {
+        try {
+            flush();
+        } catch (DbException e) {
+            LogUtils.e(e.getMessage(), e);
+        }
+        synchronized (this) {
+            closed = true;
+            this.notifyAll();
+        }
+    }
+
+    public synchronized boolean isIdle() {
+        return committedCount >= queuedCount;
+    }
+
+    private void runWorker() {
+        while (true) {
+            List<Entry> batch;
+            synchronized (this) {
+                try {
+                    if (pendingList.isEmpty()) {
+                        workerRunning = false;
+                        return;
+                    }
+                    // wait for more writes, until the batch is full or the first write is too old
+                    long deadline = firstPendingTime + maxDelayMillis;
+                    while (!flushRequested && !closed && pendingList.size() < maxBatchSize) {
+                        long delay = deadline - SystemClock.uptimeMillis();
+                        if (delay <= 0) break;
+                        this.wait(delay);
+                    }
+                } catch (InterruptedException e) {
+                    // commit what is queued
+                }
+
+                int size = Math.min(pendingList.size(), maxBatchSize);
+                List<Entry> head = pendingList.subList(0, size);
+                batch = new ArrayList<Entry>(head);
+                head.clear();
+                if (pendingList.isEmpty()) {
+                    flushRequested = false;
+                } else {
+                    firstPendingTime = SystemClock.uptimeMillis();
+                }
+            }
+
+            commit(batch);
+
+            synchronized (this) {
+                committedCount += batch.size();
+                this.notifyAll();
+            }
+        }
+    }
+
+    private void commit(List<Entry> batch) {
+        Throwable commitError = null;
+        writeLock.lock();
+        try {
+            database.beginTransaction();
+            try {
+                for (Entry entry : batch) {
+                    try {
+                        entry.write.execute();
+                    } catch (Throwable e) {
+                        entry.error = e;
+                    }
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } catch (Throwable e) {
+            commitError = e;
+            LogUtils.e(e.getMessage(), e);
+        } finally {
+            writeLock.unlock();
+        }
+
+        for (Entry entry : batch) {
+            Throwable error = commitError != null ? commitError : entry.error;
+            if (error == null) {
+                entry.future.complete(null);
+            } else {
+                entry.future.fail(error instanceof DbException ? error : new DbException(error));
+            }
+        }
+    }
+
+    private static class Entry {
+        final Write write;
+        final TaskFuture<Void> future;
+        Throwable error;
+
+        Entry(Write write, TaskFuture<Void> future) {
+            this.write = write;
+            this.future = future;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.lidroid.xutils.db.table;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 
 import com.lidroid.xutils.db.converter.ColumnConverter;
 import com.lidroid.xutils.db.converter.ColumnConverterFactory;
@@ -24,6 +25,7 @@ import com.lidroid.xutils.util.LogUtils;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.HashMap;
 
 public class Column {
 
@@ -40,7 +42,12 @@ public class Column {
     protected final Field columnField;
     protected final ColumnConverter columnConverter;
 
+    // the generated binder of the declaring class, null for reflection
+    protected final EntityBinder<Object> binder;
+    protected final int binderIndex;
+
     /* package */
+    @SuppressWarnings("unchecked")
     Column(Class<?> entityType, Field field) {
         this.columnField = field;
         this.columnConverter = ColumnConverterFactory.getColumnConverter(field.getType());//？
@@ -52,24 +59,79 @@ public class Column {
         }
         this.getMethod = ColumnUtils.getColumnGetMethod(entityType, field);
         this.setMethod = ColumnUtils.getColumnSetMethod(entityType, field);
+
+        EntityBinder<Object> binder = (EntityBinder<Object>) EntityBinder.get(field.getDeclaringClass());
+        int binderIndex = binder == null ? -1 : binder.indexOf(field.getName());
+        // the generated code reads and binds the default storage of the type (e.g. Date as long),
+        // a converter registered by the app for the type is used by reflection instead
+        if (!ColumnConverterFactory.isDefaultColumnConverter(field.getType(), columnConverter)) {
+            binderIndex = -1;
+        }
+        this.binder = binderIndex < 0 ? null : binder;
+        this.binderIndex = binderIndex;
     }
 
     @SuppressWarnings("unchecked")
     public void setValue2Entity(Object entity, Cursor cursor, int index) {
         this.index = index;
+        if (binder != null && binder.readColumn(entity, binderIndex, cursor, index)) return;
+
         Object value = columnConverter.getFieldValue(cursor, index);
         if (value == null && defaultValue == null) return;
 
-        if (setMethod != null) {
+        setFieldValue(entity, value == null ? defaultValue : value);
+    }
+
+    /**
+     * Set the field to null, or 0 (false) for a primitive field, e.g. before a reused entity is read again.
+     */
+    public void resetValue2Entity(Object entity) {
+        Class<?> fieldType = columnField.getType();
+        setFieldValue(entity, fieldType.isPrimitive() ? PRIMITIVE_ZERO_VALUES.get(fieldType) : null);
+    }
+
+    private static final HashMap<Class<?>, Object> PRIMITIVE_ZERO_VALUES = new HashMap<Class<?>, Object>(8);
+
+    static {
+        PRIMITIVE_ZERO_VALUES.put(boolean.class, false);
+        PRIMITIVE_ZERO_VALUES.put(char.class, (char) 0);
+        PRIMITIVE_ZERO_VALUES.put(byte.class, (byte) 0);
+        PRIMITIVE_ZERO_VALUES.put(short.class, (short) 0);
+        PRIMITIVE_ZERO_VALUES.put(int.class, 0);
+        PRIMITIVE_ZERO_VALUES.put(long.class, 0L);
+        PRIMITIVE_ZERO_VALUES.put(float.class, 0f);
+        PRIMITIVE_ZERO_VALUES.put(double.class, 0d);
+    }
+
+    /**
+     * Bind the column value of the entity to the statement without boxing if the binder supports it.
+     *
+     * @return false if not bound, bind getColumnValue(entity) instead.
+     */
+    public boolean bindColumnValue(Object entity, SQLiteStatement statement, int index) {
+        return binder != null && binder.bindColumn(entity, binderIndex, statement, index);
+    }
+
+    /**
+     * 设置声明属性值
+     */
+    protected void setFieldValue(Object entity, Object value) {
+        if (binder != null) {
+            try {
+                binder.setFieldValue(entity, binderIndex, value);
+            } catch (Throwable e) {
+                LogUtils.e(e.getMessage(), e);
+            }
+        } else if (setMethod != null) {
             try {
-                setMethod.invoke(entity, value == null ? defaultValue : value);
+                setMethod.invoke(entity, value);
             } catch (Throwable e) {
                 LogUtils.e(e.getMessage(), e);
             }
         } else {
             try {
                 this.columnField.setAccessible(true);
-                this.columnField.set(entity, value == null ? defaultValue : value);
+                this.columnField.set(entity, value);
             } catch (Throwable e) {
                 LogUtils.e(e.getMessage(), e);
             }
@@ -88,7 +150,13 @@ public class Column {
     public Object getFieldValue(Object entity) {
         Object fieldValue = null;
         if (entity != null) {
-            if (getMethod != null) {
+            if (binder != null) {
+                try {
+                    fieldValue = binder.getFieldValue(entity, binderIndex);
+                } catch (Throwable e) {
+                    LogUtils.e(e.getMessage(), e);
+                }
+            } else if (getMethod != null) {
                 try {
                     fieldValue = getMethod.invoke(entity);
                 } catch (Throwable e) {
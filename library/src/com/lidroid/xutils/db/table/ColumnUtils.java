@@ -174,6 +174,13 @@ public class ColumnUtils {
         return field.getAnnotation(NotNull.class) != null;
     }
 
+    /**
+     * @return null if the column is not indexed.
+     */
+    public static Index getIndex(Field field) {
+        return field.getAnnotation(Index.class);
+    }
+
     /**
      * @param field
      * @return check.value or null
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.table;
+
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+
+import java.util.Date;
+import java.util.HashMap;
+
+/**
+ * The rows of a query (e.g. the aggregates of a DbModelSelector) by column, in the types read from the cursor:
+ * the integers in a long[], the reals in a double[], the texts and blobs as objects.
+ * The numbers are not converted to strings and parsed again like in a DbModel.
+ * <pre>
+ * DbModelSet set = db.findDbModelSet(Selector.from(Order.class).groupBy("userId").select("userId", "sum(price) as total"));
+ * int total = set.getColumnIndex("total");
+ * for (int row = 0; row &lt; set.getRowCount(); row++) {
+ *     double value = set.getDouble(row, total);
+ * }
+ * </pre>
+ */
+public class DbModelSet {
+
+    // the same values as Cursor.FIELD_TYPE_* of API 11
+    public static final int TYPE_NULL = 0;
+    public static final int TYPE_LONG = 1;
+    public static final int TYPE_DOUBLE = 2;
+    public static final int TYPE_STRING = 3;
+    public static final int TYPE_BLOB = 4;
+
+    private final String[] columnNames;
+    private final HashMap<String, Integer> columnIndexMap;
+
+    private int rowCount = 0;
+    private int capacity = 0;
+
+    // [column][row], the arrays of a column are created with its first value of the type
+    private final byte[][] types;
+    private final long[][] longValues;
+    private final double[][] doubleValues;
+    private final Object[][] objectValues;
+
+    public DbModelSet(String[] columnNames) {
+        this.columnNames = columnNames;
+        int columnCount = columnNames.length;
+        this.columnIndexMap = new HashMap<String, Integer>(columnCount * 2);
+        for (int i = 0; i < columnCount; i++) {
+            columnIndexMap.put(columnNames[i], i);
+        }
+        this.types = new byte[columnCount][];
+        this.longValues = new long[columnCount][];
+        this.doubleValues = new double[columnCount][];
+        this.objectValues = new Object[columnCount][];
+    }
+
+    /**
+     * Add the current row of the cursor, the columns are in the order of the column names.
+     */
+    public void addRow(Cursor cursor) {
+        ensureCapacity(rowCount + 1);
+        int row = rowCount;
+        AbstractWindowedCursor windowedCursor =
+                cursor instanceof AbstractWindowedCursor ? (AbstractWindowedCursor) cursor : null;
+        for (int column = 0; column < columnNames.length; column++) {
+            if (cursor.isNull(column)) {
+                types[column][row] = TYPE_NULL;
+            } else {
+                switch (windowedCursor == null ? TYPE_STRING : getWindowType(windowedCursor, column)) {
+                    case TYPE_LONG:
+                        if (longValues[column] == null) {
+                            longValues[column] = new long[capacity];
+                        }
+                        longValues[column][row] = cursor.getLong(column);
+                        types[column][row] = TYPE_LONG;
+                        break;
+                    case TYPE_DOUBLE:
+                        if (doubleValues[column] == null) {
+                            doubleValues[column] = new double[capacity];
+                        }
+                        doubleValues[column][row] = cursor.getDouble(column);
+                        types[column][row] = TYPE_DOUBLE;
+                        break;
+                    case TYPE_BLOB:
+                        setObject(column, row, TYPE_BLOB, cursor.getBlob(column));
+                        break;
+                    default:
+                        setObject(column, row, TYPE_STRING, cursor.getString(column));
+                        break;
+                }
+            }
+        }
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    /**
+     * @return -1 if not found.
+     */
+    public int getColumnIndex(String columnName) {
+        Integer index = columnIndexMap.get(columnName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return TYPE_NULL, TYPE_LONG, TYPE_DOUBLE, TYPE_STRING or TYPE_BLOB.
+     */
+    public int getType(int row, int column) {
+        checkRow(row);
+        return types[column][row];
+    }
+
+    public boolean isNull(int row, int column) {
+        return getType(row, column) == TYPE_NULL;
+    }
+
+    /**
+     * @return 0 for null or a text which is not a number, like Cursor.getLong(...)
+     */
+    public long getLong(int row, int column) {
+        switch (getType(row, column)) {
+            case TYPE_LONG:
+                return longValues[column][row];
+            case TYPE_DOUBLE:
+                return (long) doubleValues[column][row];
+            case TYPE_STRING:
+                String value = (String) objectValues[column][row];
+                try {
+                    return Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    return (long) parseDouble(value);
+                }
+            case TYPE_BLOB:
+                throw new IllegalStateException("the column " + columnNames[column] + " is a blob");
+            default:
+                return 0;
+        }
+    }
+
+    public int getInt(int row, int column) {
+        return (int) getLong(row, column);
+    }
+
+    /**
+     * @return 0 for null or a text which is not a number, like Cursor.getDouble(...)
+     */
+    public double getDouble(int row, int column) {
+        switch (getType(row, column)) {
+            case TYPE_LONG:
+                return longValues[column][row];
+            case TYPE_DOUBLE:
+                return doubleValues[column][row];
+            case TYPE_STRING:
+                return parseDouble((String) objectValues[column][row]);
+            case TYPE_BLOB:
+                throw new IllegalStateException("the column " + columnNames[column] + " is a blob");
+            default:
+                return 0;
+        }
+    }
+
+    public float getFloat(int row, int column) {
+        return (float) getDouble(row, column);
+    }
+
+    public boolean getBoolean(int row, int column) {
+        switch (getType(row, column)) {
+            case TYPE_LONG:
+                return longValues[column][row] != 0;
+            case TYPE_DOUBLE:
+                return doubleValues[column][row] != 0;
+            case TYPE_STRING:
+                String value = (String) objectValues[column][row];
+                return value.length() == 1 ? "1".equals(value) : Boolean.valueOf(value);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return null for null, the numbers are converted to a string.
+     */
+    public String getString(int row, int column) {
+        switch (getType(row, column)) {
+            case TYPE_LONG:
+                return String.valueOf(longValues[column][row]);
+            case TYPE_DOUBLE:
+                return String.valueOf(doubleValues[column][row]);
+            case TYPE_STRING:
+                return (String) objectValues[column][row];
+            case TYPE_BLOB:
+                throw new IllegalStateException("the column " + columnNames[column] + " is a blob");
+            default:
+                return null;
+        }
+    }
+
+    public byte[] getBlob(int row, int column) {
+        switch (getType(row, column)) {
+            case TYPE_BLOB:
+                return (byte[]) objectValues[column][row];
+            case TYPE_NULL:
+                return null;
+            default:
+                throw new IllegalStateException("the column " + columnNames[column] + " is not a blob");
+        }
+    }
+
+    public Date getDate(int row, int column) {
+        return isNull(row, column) ? null : new Date(getLong(row, column));
+    }
+
+    public java.sql.Date getSqlDate(int row, int column) {
+        return isNull(row, column) ? null : new java.sql.Date(getLong(row, column));
+    }
+
+    /**
+     * @return the row as a DbModel (values as strings), the blobs are not included.
+     */
+    public DbModel getDbModel(int row) {
+        DbModel result = new DbModel();
+        for (int column = 0; column < columnNames.length; column++) {
+            if (getType(row, column) != TYPE_BLOB) {
+                result.add(columnNames[column], getString(row, column));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * AbstractWindowedCursor.isLong/isFloat/isBlob are deprecated since API 11 by Cursor.getType(int),
+     * which API 8 does not have.
+     */
+    @SuppressWarnings("deprecation")
+    private static int getWindowType(AbstractWindowedCursor cursor, int column) {
+        if (cursor.isLong(column)) {
+            return TYPE_LONG;
+        } else if (cursor.isFloat(column)) {
+            return TYPE_DOUBLE;
+        } else if (cursor.isBlob(column)) {
+            return TYPE_BLOB;
+        } else {
+            return TYPE_STRING;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void setObject(int column, int row, int type, Object value) {
+        if (objectValues[column] == null) {
+            objectValues[column] = new Object[capacity];
+        }
+        objectValues[column][row] = value;
+        types[column][row] = (byte) type;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("row: " + row + ", rowCount: " + rowCount);
+        }
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= capacity) return;
+        int newCapacity = Math.max(minCapacity, capacity < 8 ? 8 : capacity * 2);
+        for (int column = 0; column < columnNames.length; column++) {
+            byte[] newTypes = new byte[newCapacity];
+            if (types[column] != null) {
+                System.arraycopy(types[column], 0, newTypes, 0, rowCount);
+            }
+            types[column] = newTypes;
+            if (longValues[column] != null) {
+                long[] newValues = new long[newCapacity];
+                System.arraycopy(longValues[column], 0, newValues, 0, rowCount);
+                longValues[column] = newValues;
+            }
+            if (doubleValues[column] != null) {
+                double[] newValues = new double[newCapacity];
+                System.arraycopy(doubleValues[column], 0, newValues, 0, rowCount);
+                doubleValues[column] = newValues;
+            }
+            if (objectValues[column] != null) {
+                Object[] newValues = new Object[newCapacity];
+                System.arraycopy(objectValues[column], 0, newValues, 0, rowCount);
+                objectValues[column] = newValues;
+            }
+        }
+        capacity = newCapacity;
+    }
+}
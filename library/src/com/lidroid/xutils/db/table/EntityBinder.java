@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.table;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import com.lidroid.xutils.util.LogUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Accesses the fields of an entity without reflection.
+ * <p/>
+ * The binder of an entity is generated by the EntityBinderProcessor (see /processor) as
+ * "entityClassName$$EntityBinder", the columns of the fields it does not know are accessed by reflection.
+ * Binders are found by the name of the entity class, so with ProGuard keep the binders
+ * and the names of the entities and of their annotated fields:
+ * <pre>
+ * -keep class * extends com.lidroid.xutils.db.table.EntityBinder { *; }
+ * -keepnames @com.lidroid.xutils.db.annotation.Table class *
+ * -keepnames class * { @com.lidroid.xutils.db.annotation.* <fields>; }
+ * -keepclassmembernames class * { @com.lidroid.xutils.db.annotation.* <fields>; }
+ * </pre>
+ */
+public abstract class EntityBinder<T> {
+
+    public static final String BINDER_CLASS_SUFFIX = "$$EntityBinder";
+
+    /**
+     * The index of a name is the fieldIndex of the other methods.
+     *
+     * @return the names of the fields declared by the entity class, which the binder can access.
+     */
+    public abstract String[] getFieldNames();
+
+    /**
+     * @return null if the entity has no accessible constructor without arguments.
+     */
+    public abstract T newInstance();
+
+    public abstract Object getFieldValue(T entity, int fieldIndex);
+
+    public abstract void setFieldValue(T entity, int fieldIndex, Object value);
+
+    /**
+     * Read the column value of the cursor into the field, without boxing.
+     *
+     * @return false if the value is null or the field type has no fast path.
+     */
+    public abstract boolean readColumn(T entity, int fieldIndex, Cursor cursor, int index);
+
+    /**
+     * Bind the field value to the statement, without boxing.
+     *
+     * @return false if the value is null or the field type has no fast path.
+     */
+    public abstract boolean bindColumn(T entity, int fieldIndex, SQLiteStatement statement, int index);
+
+    public int indexOf(String fieldName) {
+        String[] fieldNames = getFieldNames();
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (fieldNames[i].equals(fieldName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final EntityBinder<Object> NONE = new EntityBinder<Object>() {
+        @Override
+        public String[] getFieldNames() {
+            return new String[0];
+        }
+
+        @Override
+        public Object newInstance() {
+            return null;
+        }
+
+        @Override
+        public Object getFieldValue(Object entity, int fieldIndex) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setFieldValue(Object entity, int fieldIndex, Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean readColumn(Object entity, int fieldIndex, Cursor cursor, int index) {
+            return false;
+        }
+
+        @Override
+        public boolean bindColumn(Object entity, int fieldIndex, SQLiteStatement statement, int index) {
+            return false;
+        }
+    };
+
+    /**
+     * key: entityType.name
+     */
+    private static final ConcurrentHashMap<String, EntityBinder<?>> binderMap = new ConcurrentHashMap<String, EntityBinder<?>>();
+
+    /**
+     * @return null if no binder has been generated for the entity class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityBinder<T> get(Class<T> entityType) {
+        EntityBinder<?> binder = binderMap.get(entityType.getName());
+        if (binder == null) {
+            binder = NONE;
+            try {
+                Class<?> binderType = Class.forName(entityType.getName() + BINDER_CLASS_SUFFIX,
+                        true, entityType.getClassLoader());
+                binder = (EntityBinder<?>) binderType.newInstance();
+            } catch (ClassNotFoundException ignored) {
+            } catch (Throwable e) {
+                LogUtils.e(e.getMessage(), e);
+            }
+            binderMap.put(entityType.getName(), binder);
+        }
+        return binder == NONE ? null : (EntityBinder<T>) binder;
+    }
+}
@@ -2,6 +2,7 @@ package com.lidroid.xutils.db.table;
 
 import android.database.Cursor;
 import com.lidroid.xutils.db.sqlite.ColumnDbType;
+import com.lidroid.xutils.db.sqlite.FindSession;
 import com.lidroid.xutils.db.sqlite.FinderLazyLoader;
 import com.lidroid.xutils.exception.DbException;
 import com.lidroid.xutils.util.LogUtils;
@@ -44,6 +45,8 @@ public class Finder extends Column {
         Object finderValue = TableUtils.getColumnOrId(entity.getClass(), this.valueColumnName).getColumnValue(entity);
         if (columnType.equals(FinderLazyLoader.class)) {
             value = new FinderLazyLoader(this, finderValue);
+        } else if (isDeferred(entity, finderValue)) {
+            return;
         } else if (columnType.equals(List.class)) {
             try {
                 value = new FinderLazyLoader(this, finderValue).getAllFromDb();
@@ -58,22 +61,25 @@ public class Finder extends Column {
             }
         }
 
-        if (setMethod != null) {
-            try {
-                setMethod.invoke(entity, value);
-            } catch (Throwable e) {
-                LogUtils.e(e.getMessage(), e);
-            }
+        setFieldValue(entity, value);
+    }
+
+    /**
+     * Set the entities loaded by a batch query of Selector.with(...), null if the table does not exist.
+     */
+    public void setLoadedValue2Entity(Object entity, List<?> loadedEntities) {
+        if (loadedEntities == null || columnField.getType().equals(List.class)) {
+            setFieldValue(entity, loadedEntities);
         } else {
-            try {
-                this.columnField.setAccessible(true);
-                this.columnField.set(entity, value);
-            } catch (Throwable e) {
-                LogUtils.e(e.getMessage(), e);
-            }
+            setFieldValue(entity, loadedEntities.isEmpty() ? null : loadedEntities.get(0));
         }
     }
 
+    private boolean isDeferred(Object entity, Object keyValue) {
+        FindSession session = FindSession.current();
+        return session != null && session.deferRelation(this, entity, keyValue);
+    }
+
     @Override
     public Object getColumnValue(Object entity) {
         return null;
@@ -19,6 +19,7 @@ import android.database.Cursor;
 import com.lidroid.xutils.db.converter.ColumnConverter;
 import com.lidroid.xutils.db.converter.ColumnConverterFactory;
 import com.lidroid.xutils.db.sqlite.ColumnDbType;
+import com.lidroid.xutils.db.sqlite.FindSession;
 import com.lidroid.xutils.db.sqlite.ForeignLazyLoader;
 import com.lidroid.xutils.exception.DbException;
 import com.lidroid.xutils.util.LogUtils;
@@ -58,6 +59,8 @@ public class Foreign extends Column {
         Class<?> columnType = columnField.getType();
         if (columnType.equals(ForeignLazyLoader.class)) {
             value = new ForeignLazyLoader(this, fieldValue);
+        } else if (isDeferred(entity, fieldValue)) {
+            return;
         } else if (columnType.equals(List.class)) {
             try {
                 value = new ForeignLazyLoader(this, fieldValue).getAllFromDb();
@@ -72,22 +75,25 @@ public class Foreign extends Column {
             }
         }
 
-        if (setMethod != null) {
-            try {
-                setMethod.invoke(entity, value);
-            } catch (Throwable e) {
-                LogUtils.e(e.getMessage(), e);
-            }
+        setFieldValue(entity, value);
+    }
+
+    /**
+     * Set the entities loaded by a batch query of Selector.with(...), null if the table does not exist.
+     */
+    public void setLoadedValue2Entity(Object entity, List<?> loadedEntities) {
+        if (loadedEntities == null || columnField.getType().equals(List.class)) {
+            setFieldValue(entity, loadedEntities);
         } else {
-            try {
-                this.columnField.setAccessible(true);
-                this.columnField.set(entity, value);
-            } catch (Throwable e) {
-                LogUtils.e(e.getMessage(), e);
-            }
+            setFieldValue(entity, loadedEntities.isEmpty() ? null : loadedEntities.get(0));
         }
     }
 
+    private boolean isDeferred(Object entity, Object keyValue) {
+        FindSession session = FindSession.current();
+        return session != null && session.deferRelation(this, entity, keyValue);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public Object getColumnValue(Object entity) {
@@ -15,8 +15,9 @@
 
 package com.lidroid.xutils.db.table;
 
+import android.database.sqlite.SQLiteStatement;
+
 import com.lidroid.xutils.db.annotation.NoAutoIncrement;
-import com.lidroid.xutils.util.LogUtils;
 
 import java.lang.reflect.Field;
 import java.util.HashSet;
@@ -48,20 +49,13 @@ public class Id extends Column {
             idValue = (int) value;
         }
 
-        if (setMethod != null) {
-            try {
-                setMethod.invoke(entity, idValue);
-            } catch (Throwable e) {
-                LogUtils.e(e.getMessage(), e);
-            }
-        } else {
-            try {
-                this.columnField.setAccessible(true);
-                this.columnField.set(entity, idValue);
-            } catch (Throwable e) {
-                LogUtils.e(e.getMessage(), e);
-            }
-        }
+        setFieldValue(entity, idValue);
+    }
+
+    @Override
+    public boolean bindColumnValue(Object entity, SQLiteStatement statement, int index) {
+        // the auto increment id 0 is bound as null
+        return !this.isAutoIncrement() && super.bindColumnValue(entity, statement, index);
     }
 
     @Override
@@ -18,7 +18,6 @@ package com.lidroid.xutils.db.table;
 import android.text.TextUtils;
 
 import com.lidroid.xutils.DbUtils;
-import com.lidroid.xutils.util.LogUtils;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -65,7 +64,6 @@ public class Table {
      */
     public static synchronized Table get(DbUtils db, Class<?> entityType) {
         String tableKey = db.getDaoConfig().getDbName() + "#" + entityType.getName();
-        LogUtils.e("tableKey:" + tableKey);
         Table table = tableMap.get(tableKey);
         if (table == null) {//没有缓存
             table = new Table(db, entityType);
@@ -108,4 +106,14 @@ public class Table {
         this.checkedDatabase = checkedDatabase;
     }
 
+    private boolean checkedIndex;
+
+    public boolean isCheckedIndex() {
+        return checkedIndex;
+    }
+
+    public void setCheckedIndex(boolean checkedIndex) {
+        this.checkedIndex = checkedIndex;
+    }
+
 }
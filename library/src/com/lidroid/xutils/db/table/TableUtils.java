@@ -17,6 +17,7 @@ package com.lidroid.xutils.db.table;
 
 import android.text.TextUtils;
 
+import com.lidroid.xutils.db.annotation.CompositeIndex;
 import com.lidroid.xutils.db.annotation.Id;
 import com.lidroid.xutils.db.annotation.Table;
 import com.lidroid.xutils.db.converter.ColumnConverterFactory;
@@ -51,6 +52,13 @@ public class TableUtils {
         return null;
     }
 
+    /**
+     * @return null if the entity has no CompositeIndex.
+     */
+    public static CompositeIndex getCompositeIndex(Class<?> entityType) {
+        return entityType.getAnnotation(CompositeIndex.class);
+    }
+
     /**
      * key: entityType.name 高并发、高吞吐量的线程安全HashMap实现。
      */
@@ -20,6 +20,7 @@ import android.os.SystemClock;
 import com.lidroid.xutils.HttpUtils;
 import com.lidroid.xutils.exception.HttpException;
 import com.lidroid.xutils.http.callback.*;
+import com.lidroid.xutils.http.client.RetryHandler;
 import com.lidroid.xutils.task.PriorityAsyncTask;
 import com.lidroid.xutils.util.OtherUtils;
 
@@ -112,6 +113,9 @@ public class HttpHandler<T> extends PriorityAsyncTask<Object, Object, Void> impl
         HttpRequestRetryHandler retryHandler = client.getHttpRequestRetryHandler();//请求重试回调：重定向
 
         while (true) {
+            if (isTimedOut()) {//任务超时，不再重试
+                throw new HttpException("task timed out: " + requestUrl);
+            }
             if (autoResume && isDownloadingFile) {//对应download(...)下载函数
                 File downloadFile = new File(fileSavePath);//文件保存位置
                 long fileLen = 0;
@@ -138,6 +142,12 @@ public class HttpHandler<T> extends PriorityAsyncTask<Object, Object, Void> impl
                 ResponseInfo<T> responseInfo = null;
                 if (!isCancelled()) {
                     HttpResponse response = client.execute(request, context);//执行网络请求
+                    if (retryHandler instanceof RetryHandler && ((RetryHandler) retryHandler)
+                            .retryResponse(response, retriedCount + 1, request)) {//503/429按Retry-After重试
+                        retriedCount++;
+                        OtherUtils.consumeQuietly(response);
+                        continue;
+                    }
                     responseInfo = handleResponse(response);//根据响应获得信息
                 }
                 return responseInfo;
@@ -209,7 +219,6 @@ public class HttpHandler<T> extends PriorityAsyncTask<Object, Object, Void> impl
     }
 
     private final static int UPDATE_START = 1;
-    private final static int UPDATE_LOADING = 2;
     private final static int UPDATE_FAILURE = 3;
     private final static int UPDATE_SUCCESS = 4;
 
@@ -229,12 +238,6 @@ public class HttpHandler<T> extends PriorityAsyncTask<Object, Object, Void> impl
                 this.state = State.STARTED;
                 callback.onStart();
                 break;
-            case UPDATE_LOADING:
-                if (values.length != 3) return;
-                this.state = State.LOADING;
-                callback.onLoading(Long.valueOf(String.valueOf(values[1])), Long.valueOf(String
-                        .valueOf(values[2])), isUploading);
-                break;
             case UPDATE_FAILURE:
                 if (values.length != 3) return;
                 this.state = State.FAILURE;
@@ -250,6 +253,13 @@ public class HttpHandler<T> extends PriorityAsyncTask<Object, Object, Void> impl
         }
     }
 
+    @Override
+    protected void onLoadingUpdate(long total, long current) {
+        if (this.state == State.CANCELLED || callback == null) return;
+        this.state = State.LOADING;
+        callback.onLoading(total, current, isUploading);
+    }
+
     /**
      * 处理网络响应执行步骤：
      * 1.检查当前执行状态，如果是取消立即返回方法。
@@ -333,6 +343,19 @@ public class HttpHandler<T> extends PriorityAsyncTask<Object, Object, Void> impl
         }
     }
 
+    /**
+     * Dropped from the queue after the timeout, see {@link #setTimeout(long)}.
+     */
+    @Override
+    protected void onCancelled() {
+        if (this.state != State.CANCELLED) {
+            this.state = State.CANCELLED;
+            if (callback != null) {
+                callback.onCancelled();
+            }
+        }
+    }
+
     private long lastUpdateTime;
 
 
@@ -342,14 +365,18 @@ public class HttpHandler<T> extends PriorityAsyncTask<Object, Object, Void> impl
      */
     @Override
     public boolean updateProgress(long total, long current, boolean forceUpdateUI) {
+        if (isTimedOut() && request != null && !request.isAborted()) {
+            // the read fails, then sendRequest gives up with a timeout failure.
+            request.abort();
+        }
         if (callback != null && this.state != State.CANCELLED) {
             if (forceUpdateUI) {//更新UI 线程
-                this.publishProgress(UPDATE_LOADING, total, current);
+                this.publishLoading(total, current);
             } else {
                 long currTime = SystemClock.uptimeMillis();
                 if (currTime - lastUpdateTime >= callback.getRate()) {//大于设定的比率才去更新进度
                     lastUpdateTime = currTime;
-                    this.publishProgress(UPDATE_LOADING, total, current);
+                    this.publishLoading(total, current);
                 }
             }
         }
@@ -19,6 +19,8 @@ import com.lidroid.xutils.HttpUtils;
 import com.lidroid.xutils.exception.HttpException;
 import com.lidroid.xutils.http.callback.DefaultHttpRedirectHandler;
 import com.lidroid.xutils.http.callback.HttpRedirectHandler;
+import com.lidroid.xutils.http.client.RetryHandler;
+import com.lidroid.xutils.util.OtherUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpRequestRetryHandler;
@@ -76,6 +78,12 @@ public class SyncHttpHandler {
                 }
 
                 HttpResponse response = client.execute(request, context);
+                if (retryHandler instanceof RetryHandler && ((RetryHandler) retryHandler)
+                        .retryResponse(response, retriedTimes + 1, request)) {
+                    retriedTimes++;
+                    OtherUtils.consumeQuietly(response);
+                    continue;
+                }
                 return handleResponse(response);
             } catch (UnknownHostException e) {
                 exception = e;
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.http.client;
+
+import com.lidroid.xutils.util.LatencyHistogram;
+
+/**
+ * A snapshot of the connection pool of {@link HttpConnectionManager}.
+ */
+public class ConnPoolStats {
+
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int maxTotal;
+    private final long leaseTimeouts;
+    private final long reapedIdle;
+    private final LatencyHistogram leaseWaitTime;
+
+    /* package */ ConnPoolStats(int leased, int available, int pending, int maxTotal,
+                                long leaseTimeouts, long reapedIdle, LatencyHistogram leaseWaitTime) {
+        this.leased = leased;
+        this.available = available;
+        this.pending = pending;
+        this.maxTotal = maxTotal;
+        this.leaseTimeouts = leaseTimeouts;
+        this.reapedIdle = reapedIdle;
+        this.leaseWaitTime = leaseWaitTime;
+    }
+
+    /**
+     * @return connections in use by requests.
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    /**
+     * @return idle connections kept alive in the pool.
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * @return threads blocked waiting for a connection.
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * @return times that a request gave up waiting for a connection.
+     */
+    public long getLeaseTimeouts() {
+        return leaseTimeouts;
+    }
+
+    /**
+     * @return times that the reaper closed idle or expired connections.
+     */
+    public long getReapedIdle() {
+        return reapedIdle;
+    }
+
+    /**
+     * @return the live histogram of the time spent waiting for a connection.
+     */
+    public LatencyHistogram getLeaseWaitTime() {
+        return leaseWaitTime;
+    }
+
+    @Override
+    public String toString() {
+        return "leased=" + leased + ", available=" + available + ", pending=" + pending +
+                ", max=" + maxTotal + ", timeouts=" + leaseTimeouts + ", reaped=" + reapedIdle +
+                ", wait[" + leaseWaitTime + "]";
+    }
+}
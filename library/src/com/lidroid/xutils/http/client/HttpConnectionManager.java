@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.http.client;
+
+import android.os.SystemClock;
+
+import com.lidroid.xutils.util.LatencyHistogram;
+import com.lidroid.xutils.util.LogUtils;
+
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.tsccm.AbstractConnPool;
+import org.apache.http.impl.conn.tsccm.ConnPoolByRoute;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.HttpParams;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ThreadSafeClientConnManager with pool metrics and an idle connection reaper.
+ * The reapers of all the managers share one daemon thread.
+ */
+public class HttpConnectionManager extends ThreadSafeClientConnManager {
+
+    private static final ScheduledExecutorService REAPER_EXECUTOR =
+            new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "xUtils connection reaper #" + mCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final int maxTotal;
+    private final LatencyHistogram leaseWaitTime = new LatencyHistogram();
+    private final AtomicLong leaseTimeouts = new AtomicLong();
+    private final AtomicLong reapedIdle = new AtomicLong();
+
+    private ScheduledFuture<?> reaperFuture;
+    private long idleTimeout;
+
+    public HttpConnectionManager(HttpParams params, SchemeRegistry schemeRegistry) {
+        super(params, schemeRegistry);
+        this.maxTotal = ConnManagerParams.getMaxTotalConnections(params);
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+        final ClientConnectionRequest request = super.requestConnection(route, state);
+        return new ClientConnectionRequest() {
+            @Override
+            public ManagedClientConnection getConnection(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                long start = SystemClock.uptimeMillis();
+                try {
+                    return request.getConnection(timeout, tunit);
+                } catch (ConnectionPoolTimeoutException e) {
+                    leaseTimeouts.incrementAndGet();
+                    throw e;
+                } finally {
+                    leaseWaitTime.record(SystemClock.uptimeMillis() - start);
+                }
+            }
+
+            @Override
+            public void abortRequest() {
+                request.abortRequest();
+            }
+        };
+    }
+
+    /**
+     * Close the expired connections and the connections idle longer than idleTimeout periodically.
+     *
+     * @param idleTimeout milliseconds, <=0 to stop the reaper.
+     */
+    public synchronized void setIdleTimeout(long idleTimeout) {
+        if (reaperFuture != null) {
+            reaperFuture.cancel(false);
+            reaperFuture = null;
+        }
+        this.idleTimeout = idleTimeout;
+        if (idleTimeout > 0) {
+            long interval = Math.max(1000, idleTimeout / 2);
+            reaperFuture = REAPER_EXECUTOR.scheduleWithFixedDelay(new ReaperTask(this),
+                    interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    private void reapConnections() {
+        try {
+            int before = getConnectionsInPool();
+            closeExpiredConnections();
+            long idle = getIdleTimeout();
+            if (idle > 0) {
+                closeIdleConnections(idle, TimeUnit.MILLISECONDS);
+            }
+            int closed = before - getConnectionsInPool();
+            if (closed > 0) {
+                reapedIdle.addAndGet(closed);
+            }
+        } catch (Throwable e) {
+            LogUtils.e(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Holds the manager weakly, an abandoned manager is not kept alive by the shared reaper thread.
+     */
+    private static class ReaperTask implements Runnable {
+        private final WeakReference<HttpConnectionManager> managerReference;
+
+        public ReaperTask(HttpConnectionManager manager) {
+            this.managerReference = new WeakReference<HttpConnectionManager>(manager);
+        }
+
+        @Override
+        public void run() {
+            HttpConnectionManager manager = managerReference.get();
+            if (manager == null) {
+                // throwing cancels the periodic task
+                throw new IllegalStateException("connection manager released");
+            }
+            manager.reapConnections();
+        }
+    }
+
+    @Override
+    protected AbstractConnPool createConnectionPool(HttpParams params) {
+        return new MonitoredConnPool(connOperator, params);
+    }
+
+    public ConnPoolStats getStats() {
+        int[] counts = ((MonitoredConnPool) connectionPool).getCounts();
+        return new ConnPoolStats(counts[0], counts[1], counts[2], maxTotal,
+                leaseTimeouts.get(), reapedIdle.get(), leaseWaitTime);
+    }
+
+    private static class MonitoredConnPool extends ConnPoolByRoute {
+
+        public MonitoredConnPool(ClientConnectionOperator operator, HttpParams params) {
+            super(operator, params);
+        }
+
+        /**
+         * @return {leased, available, pending}
+         */
+        public int[] getCounts() {
+            poolLock.lock();
+            try {
+                int available = freeConnections.size();
+                return new int[]{Math.max(0, numConnections - available), available, waitingThreads.size()};
+            } finally {
+                poolLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        setIdleTimeout(0);
+        super.shutdown();
+    }
+}
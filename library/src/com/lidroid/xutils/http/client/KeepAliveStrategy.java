@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.http.client;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Honors "Keep-Alive: timeout=n" of the response.
+ * Without the header the connection is kept for the default duration instead of forever,
+ * so the idle connection reaper can close it before the server silently drops it.
+ */
+public class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+    private volatile long defaultKeepAlive;
+
+    /**
+     * @param defaultKeepAlive milliseconds, <=0 means forever.
+     */
+    public KeepAliveStrategy(long defaultKeepAlive) {
+        this.defaultKeepAlive = defaultKeepAlive;
+    }
+
+    public long getDefaultKeepAlive() {
+        return defaultKeepAlive;
+    }
+
+    public void setDefaultKeepAlive(long defaultKeepAlive) {
+        this.defaultKeepAlive = defaultKeepAlive;
+    }
+
+    @Override
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+        while (it.hasNext()) {
+            HeaderElement element = it.nextElement();
+            String value = element.getValue();
+            if (value != null && "timeout".equalsIgnoreCase(element.getName())) {
+                try {
+                    return Long.parseLong(value.trim()) * 1000;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return defaultKeepAlive > 0 ? defaultKeepAlive : -1;
+    }
+}
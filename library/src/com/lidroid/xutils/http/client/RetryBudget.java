@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.http.client;
+
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-host token bucket of retries.
+ * Every retry takes one token, the tokens refill slowly, so during an outage of a host the
+ * clients stop retrying instead of multiplying the load.
+ */
+public class RetryBudget {
+
+    private final static int MAX_HOSTS = 64;
+
+    private final static RetryBudget DEFAULT = new RetryBudget(10, 0.5);
+
+    /**
+     * Shared by the RetryHandlers without their own budget.
+     */
+    public static RetryBudget getDefault() {
+        return DEFAULT;
+    }
+
+    private final int capacity;
+    private final double refillPerSecond;
+
+    private final LinkedHashMap<String, Bucket> buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > MAX_HOSTS;
+        }
+    };
+
+    /**
+     * @param capacity        max retries of a host in a burst.
+     * @param refillPerSecond tokens added per second.
+     */
+    public RetryBudget(int capacity, double refillPerSecond) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.refillPerSecond = refillPerSecond;
+    }
+
+    /**
+     * @return false if the budget of the host has been used up.
+     */
+    public synchronized boolean tryAcquire(String host) {
+        if (host == null) host = "";
+        long now = SystemClock.uptimeMillis();
+        Bucket bucket = buckets.get(host);
+        if (bucket == null) {
+            bucket = new Bucket(capacity, now);
+            buckets.put(host, bucket);
+        } else {
+            bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.lastRefillTime) * refillPerSecond / 1000);
+            bucket.lastRefillTime = now;
+        }
+        if (bucket.tokens >= 1) {
+            bucket.tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private static class Bucket {
+        double tokens;
+        long lastRefillTime;
+
+        public Bucket(double tokens, long lastRefillTime) {
+            this.tokens = tokens;
+            this.lastRefillTime = lastRefillTime;
+        }
+    }
+}
@@ -15,12 +15,18 @@
 
 package com.lidroid.xutils.http.client;
 
-import android.os.SystemClock;
 import com.lidroid.xutils.util.LogUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
 import org.apache.http.NoHttpResponseException;
 import org.apache.http.client.HttpRequestRetryHandler;
-import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.RequestWrapper;
+import org.apache.http.impl.cookie.DateUtils;
 import org.apache.http.protocol.ExecutionContext;
 import org.apache.http.protocol.HttpContext;
 
@@ -28,17 +34,32 @@ import javax.net.ssl.SSLHandshakeException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.SocketException;
+import java.net.URI;
 import java.net.UnknownHostException;
 import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Retry policy of the requests:
+ * 1.exponential backoff with full jitter, the clients don't retry in lockstep.
+ * 2.per-host retry budget, see {@link RetryBudget}.
+ * 3.idempotent methods (GET, HEAD, OPTIONS, TRACE, PUT, DELETE) are retried after the request
+ * has been sent if their entity is null or repeatable, the others only if the request has not been sent.
+ * 4.503/429 responses are retried after their Retry-After, see {@link #retryResponse}.
+ */
 public class RetryHandler implements HttpRequestRetryHandler {
 
     private static final int RETRY_SLEEP_INTERVAL = 500;
+    private static final int MAX_RETRY_SLEEP_INTERVAL = 1000 * 10;
+    private static final int MAX_RETRY_AFTER = 1000 * 30;
 
     private static HashSet<Class<?>> exceptionWhiteList = new HashSet<Class<?>>();
 
     private static HashSet<Class<?>> exceptionBlackList = new HashSet<Class<?>>();
 
+    private static HashSet<String> idempotentMethods = new HashSet<String>();
+
     static {
         exceptionWhiteList.add(NoHttpResponseException.class);
         exceptionWhiteList.add(UnknownHostException.class);
@@ -46,14 +67,60 @@ public class RetryHandler implements HttpRequestRetryHandler {
 
         exceptionBlackList.add(InterruptedIOException.class);
         exceptionBlackList.add(SSLHandshakeException.class);
+
+        idempotentMethods.add("GET");
+        idempotentMethods.add("HEAD");
+        idempotentMethods.add("OPTIONS");
+        idempotentMethods.add("TRACE");
+        idempotentMethods.add("PUT");
+        idempotentMethods.add("DELETE");
     }
 
+    private static final Random RANDOM = new Random();
+
     private final int maxRetries;
+    private int baseInterval = RETRY_SLEEP_INTERVAL;
+    private int maxInterval = MAX_RETRY_SLEEP_INTERVAL;
+    private int maxRetryAfter = MAX_RETRY_AFTER;
+    private RetryBudget retryBudget = RetryBudget.getDefault();
+
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong giveUpCount = new AtomicLong();
+    private final AtomicLong budgetExhaustedCount = new AtomicLong();
+    private final AtomicLong backoffTime = new AtomicLong();
 
     public RetryHandler(int maxRetries) {
         this.maxRetries = maxRetries;//最大重试次数
     }
 
+    /**
+     * @param baseInterval the backoff of the first retry, doubled by every retry.
+     * @param maxInterval  the max backoff.
+     */
+    public RetryHandler setBackoff(int baseInterval, int maxInterval) {
+        if (baseInterval > 0 && maxInterval >= baseInterval) {
+            this.baseInterval = baseInterval;
+            this.maxInterval = maxInterval;
+        }
+        return this;
+    }
+
+    /**
+     * @param maxRetryAfter a response asking to wait longer than this is not retried.
+     */
+    public RetryHandler setMaxRetryAfter(int maxRetryAfter) {
+        this.maxRetryAfter = maxRetryAfter;
+        return this;
+    }
+
+    /**
+     * @param retryBudget null to disable the budget.
+     */
+    public RetryHandler setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+        return this;
+    }
+
     //覆写方法重试调用
     @Override
     public boolean retryRequest(IOException exception, int retriedTimes, HttpContext context) {
@@ -77,17 +144,14 @@ public class RetryHandler implements HttpRequestRetryHandler {
             retry = true;
         }
 
-        if (retry) {//重试
+        HttpRequest currRequest = null;
+        if (retry) {
             try {
-                Object currRequest = context.getAttribute(ExecutionContext.HTTP_REQUEST);
+                currRequest = getRequest(context);
                 if (currRequest != null) {
-                    if (currRequest instanceof HttpRequestBase) {//基础请求类
-                        HttpRequestBase requestBase = (HttpRequestBase) currRequest;
-                        retry = "GET".equals(requestBase.getMethod());//是否是GET方法
-                    } else if (currRequest instanceof RequestWrapper) {//包装请求类
-                        RequestWrapper requestWrapper = (RequestWrapper) currRequest;
-                        retry = "GET".equals(requestWrapper.getMethod());
-                    }
+                    //幂等方法可以重试，其他方法只有未发送时重试
+                    String method = currRequest.getRequestLine().getMethod();
+                    retry = !sent || (idempotentMethods.contains(method) && isEntityRepeatable(currRequest));
                 } else {
                     retry = false;
                     LogUtils.e("retry error, curr request is null");
@@ -99,10 +163,179 @@ public class RetryHandler implements HttpRequestRetryHandler {
         }
 
         if (retry) {
-            SystemClock.sleep(RETRY_SLEEP_INTERVAL); // sleep a while and retry http request again.
+            retry = acquireBudget(getHost(currRequest, context));
+        }
+
+        if (retry) {
+            // sleep a while and retry http request again.
+            retry = sleep(getBackoff(retriedTimes));
+        }
+
+        if (retry) {
+            retryCount.incrementAndGet();
+        } else {
+            giveUpCount.incrementAndGet();
+        }
+        return retry;
+    }
+
+    /**
+     * Retry the 503 and 429 responses of the idempotent requests, after the Retry-After of the
+     * response or the backoff.
+     *
+     * @return true if the request should be sent again, the caller must consume the response.
+     */
+    public boolean retryResponse(HttpResponse response, int retriedTimes, HttpUriRequest request) {
+        if (response == null || request == null) return false;
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode != 503 && statusCode != 429) return false;
+
+        boolean retry = retriedTimes <= maxRetries && idempotentMethods.contains(request.getMethod())
+                && isEntityRepeatable(request);
+
+        long delay = -1;
+        if (retry) {
+            delay = getRetryAfter(response);
+            if (delay > maxRetryAfter) {
+                retry = false;
+            } else if (delay < 0) {
+                delay = getBackoff(retriedTimes);
+            }
+        }
+
+        if (retry) {
+            URI uri = request.getURI();
+            retry = acquireBudget(uri == null ? null : uri.getHost());
+        }
+
+        if (retry) {
+            retry = sleep(delay);
         }
 
+        if (retry) {
+            retryCount.incrementAndGet();
+        } else {
+            giveUpCount.incrementAndGet();
+        }
         return retry;
     }
 
-}
\ No newline at end of file
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @return the retries done by this handler.
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * @return the failures not retried by this handler.
+     */
+    public long getGiveUpCount() {
+        return giveUpCount.get();
+    }
+
+    /**
+     * @return the retries refused by the retry budget.
+     */
+    public long getBudgetExhaustedCount() {
+        return budgetExhaustedCount.get();
+    }
+
+    /**
+     * @return the total milliseconds slept before the retries.
+     */
+    public long getBackoffTime() {
+        return backoffTime.get();
+    }
+
+    /**
+     * full jitter: random(0, min(maxInterval, baseInterval * 2^(retriedTimes-1)))
+     */
+    private long getBackoff(int retriedTimes) {
+        int shift = Math.min(Math.max(retriedTimes - 1, 0), 16);
+        long ceiling = Math.min((long) maxInterval, (long) baseInterval << shift);
+        return (long) (RANDOM.nextDouble() * ceiling);
+    }
+
+    private boolean acquireBudget(String host) {
+        if (retryBudget == null || retryBudget.tryAcquire(host)) {
+            return true;
+        }
+        budgetExhaustedCount.incrementAndGet();
+        LogUtils.w("retry budget exhausted: " + host);
+        return false;
+    }
+
+    /**
+     * @return false if interrupted, e.g. the request has been cancelled.
+     */
+    private boolean sleep(long millis) {
+        if (millis <= 0) return true;
+        try {
+            Thread.sleep(millis);
+            backoffTime.addAndGet(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * The same request is sent again by the retry, a streaming entity (e.g. InputStreamUploadEntity)
+     * has been consumed and would be sent truncated.
+     *
+     * @return true if the request has no entity or a repeatable one.
+     */
+    private static boolean isEntityRepeatable(HttpRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    private static HttpRequest getRequest(HttpContext context) {
+        Object currRequest = context.getAttribute(ExecutionContext.HTTP_REQUEST);
+        if (currRequest instanceof RequestWrapper) {//包装请求类
+            return ((RequestWrapper) currRequest).getOriginal();
+        } else if (currRequest instanceof HttpRequest) {//基础请求类
+            return (HttpRequest) currRequest;
+        }
+        return null;
+    }
+
+    private static String getHost(HttpRequest request, HttpContext context) {
+        Object targetHost = context.getAttribute(ExecutionContext.HTTP_TARGET_HOST);
+        if (targetHost instanceof HttpHost) {
+            return ((HttpHost) targetHost).getHostName();
+        }
+        if (request instanceof HttpUriRequest) {
+            URI uri = ((HttpUriRequest) request).getURI();
+            return uri == null ? null : uri.getHost();
+        }
+        return null;
+    }
+
+    /**
+     * @return milliseconds, -1 if absent or invalid.
+     */
+    private static long getRetryAfter(HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+        if (header == null || header.getValue() == null) return -1;
+        String value = header.getValue().trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            return Math.max(0, DateUtils.parseDate(value).getTime() - System.currentTimeMillis());
+        } catch (Throwable ignored) {
+        }
+        return -1;
+    }
+}
@@ -42,10 +42,10 @@ public class FileUploadEntity extends FileEntity implements UploadEntity {
         if (outStream == null) {
             throw new IllegalArgumentException("Output stream may not be null");
         }
-        BufferedInputStream inStream = null;
+        FileInputStream inStream = null;
+        byte[] tmp = IOUtils.obtainBuffer();
         try {
-            inStream = new BufferedInputStream(new FileInputStream(this.file));
-            byte[] tmp = new byte[4096];
+            inStream = new FileInputStream(this.file);
             int len;
             while ((len = inStream.read(tmp)) != -1) {
                 outStream.write(tmp, 0, len);
@@ -62,6 +62,7 @@ public class FileUploadEntity extends FileEntity implements UploadEntity {
             }
         } finally {
             IOUtils.closeQuietly(inStream);
+            IOUtils.recycleBuffer(tmp);
         }
     }
 
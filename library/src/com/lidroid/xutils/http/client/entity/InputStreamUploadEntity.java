@@ -32,8 +32,6 @@ import java.io.OutputStream;
  */
 public class InputStreamUploadEntity extends AbstractHttpEntity implements UploadEntity {
 
-    private final static int BUFFER_SIZE = 2048;
-
     private final InputStream content;
     private final long length;
 
@@ -65,8 +63,8 @@ public class InputStreamUploadEntity extends AbstractHttpEntity implements Uploa
             throw new IllegalArgumentException("Output stream may not be null");
         }
         InputStream inStream = this.content;
+        byte[] buffer = IOUtils.obtainBuffer();
         try {
-            byte[] buffer = new byte[BUFFER_SIZE];
             int l;
             if (this.length < 0) {
                 // consume until EOF
@@ -83,7 +81,7 @@ public class InputStreamUploadEntity extends AbstractHttpEntity implements Uploa
                 // consume no more than length
                 long remaining = this.length;
                 while (remaining > 0) {
-                    l = inStream.read(buffer, 0, (int) Math.min(BUFFER_SIZE, remaining));
+                    l = inStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
                     if (l == -1) {
                         break;
                     }
@@ -103,6 +101,7 @@ public class InputStreamUploadEntity extends AbstractHttpEntity implements Uploa
             }
         } finally {
             IOUtils.closeQuietly(inStream);
+            IOUtils.recycleBuffer(buffer);
         }
     }
 
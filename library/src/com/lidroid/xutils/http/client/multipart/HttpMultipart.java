@@ -18,7 +18,6 @@ package com.lidroid.xutils.http.client.multipart;
 import com.lidroid.xutils.http.client.multipart.content.ContentBody;
 import org.apache.http.util.ByteArrayBuffer;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
@@ -48,7 +47,18 @@ class HttpMultipart {
     private static void writeBytes(
             final ByteArrayBuffer b, final OutputStream out) throws IOException {
         out.write(b.buffer(), 0, b.length());
-        out.flush();
+    }
+
+    private static int encodedLength(final Charset charset, final String string) {
+        return charset.encode(CharBuffer.wrap(string)).remaining();
+    }
+
+    /**
+     * @return the bytes written by writeField(field, charset, out)
+     */
+    private static int fieldLength(final MinimalField field, final Charset charset) {
+        return encodedLength(charset, field.getName()) + FIELD_SEP.length() +
+                encodedLength(charset, field.getBody()) + CR_LF.length();
     }
 
     private static void writeBytes(
@@ -166,15 +176,7 @@ class HttpMultipart {
     private void doWriteTo(
             final HttpMultipartMode mode,
             final OutputStream out,
-            boolean writeContent) throws IOException {
-        doWriteTo(mode, out, MultipartEntity.CallBackInfo.DEFAULT, writeContent);
-    }
-
-    private void doWriteTo(
-            final HttpMultipartMode mode,
-            final OutputStream out,
-            MultipartEntity.CallBackInfo callBackInfo,
-            boolean writeContent) throws IOException {
+            MultipartEntity.CallBackInfo callBackInfo) throws IOException {
 
         callBackInfo.pos = 0;
 
@@ -196,8 +198,7 @@ class HttpMultipart {
                 case STRICT:
                     for (MinimalField field : header) {
                         writeField(field, out);
-                        callBackInfo.pos += encode(MIME.DEFAULT_CHARSET,
-                                field.getName() + field.getBody()).length() + FIELD_SEP.length() + CR_LF.length();
+                        callBackInfo.pos += fieldLength(field, MIME.DEFAULT_CHARSET);
                     }
                     break;
                 case BROWSER_COMPATIBLE:
@@ -205,14 +206,12 @@ class HttpMultipart {
                     // Use content charset
                     MinimalField cd = header.getField(MIME.CONTENT_DISPOSITION);
                     writeField(cd, this.charset, out);
-                    callBackInfo.pos += encode(this.charset,
-                            cd.getName() + cd.getBody()).length() + FIELD_SEP.length() + CR_LF.length();
+                    callBackInfo.pos += fieldLength(cd, this.charset);
                     String filename = part.getBody().getFilename();
                     if (filename != null) {
                         MinimalField ct = header.getField(MIME.CONTENT_TYPE);
                         writeField(ct, this.charset, out);
-                        callBackInfo.pos += encode(this.charset,
-                                ct.getName() + ct.getBody()).length() + FIELD_SEP.length() + CR_LF.length();
+                        callBackInfo.pos += fieldLength(ct, this.charset);
                     }
                     break;
                 default:
@@ -221,11 +220,9 @@ class HttpMultipart {
             writeBytes(CR_LF, out);
             callBackInfo.pos += CR_LF.length();
 
-            if (writeContent) {
-                ContentBody body = part.getBody();
-                body.setCallBackInfo(callBackInfo);
-                body.writeTo(out);
-            }
+            ContentBody body = part.getBody();
+            body.setCallBackInfo(callBackInfo);
+            body.writeTo(out);
             writeBytes(CR_LF, out);
             callBackInfo.pos += CR_LF.length();
         }
@@ -237,6 +234,7 @@ class HttpMultipart {
         callBackInfo.pos += TWO_DASHES.length();
         writeBytes(CR_LF, out);
         callBackInfo.pos += CR_LF.length();
+        out.flush();
         callBackInfo.doCallBack(true);
     }
 
@@ -248,7 +246,7 @@ class HttpMultipart {
      * @see #getMode()
      */
     public void writeTo(final OutputStream out, MultipartEntity.CallBackInfo callBackInfo) throws IOException {
-        doWriteTo(this.mode, out, callBackInfo, true);
+        doWriteTo(this.mode, out, callBackInfo);
     }
 
     /**
@@ -257,9 +255,8 @@ class HttpMultipart {
      * from one another). If any of the @{link BodyPart}s contained in this object
      * is of a streaming entity of unknown length the total length is also unknown.
      * <p/>
-     * This method buffers only a small amount of data in order to determine the
-     * total length of the entire entity. The content of individual parts is not
-     * buffered.
+     * The length of the delimiters and the part headers is computed from their
+     * encoded sizes, nothing is buffered.
      *
      * @return total length of the multipart entity if known, <code>-1</code>
      *         otherwise.
@@ -275,15 +272,39 @@ class HttpMultipart {
                 return -1;
             }
         }
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try {
-            doWriteTo(this.mode, out, false);
-            byte[] extra = out.toByteArray();
-            return contentLen + extra.length;
-        } catch (Throwable ex) {
-            // Should never happen
-            return -1;
+        return contentLen + getExtraLength(this.mode);
+    }
+
+    /**
+     * @return the length of everything written by doWriteTo except the part contents.
+     */
+    private long getExtraLength(final HttpMultipartMode mode) {
+        int boundaryLength = encodedLength(this.charset, getBoundary());
+        long extraLen = 0;
+        for (FormBodyPart part : this.parts) {
+            extraLen += TWO_DASHES.length() + boundaryLength + CR_LF.length();
+
+            MinimalFieldHeader header = part.getHeader();
+            switch (mode) {
+                case STRICT:
+                    for (MinimalField field : header) {
+                        extraLen += fieldLength(field, MIME.DEFAULT_CHARSET);
+                    }
+                    break;
+                case BROWSER_COMPATIBLE:
+                    extraLen += fieldLength(header.getField(MIME.CONTENT_DISPOSITION), this.charset);
+                    if (part.getBody().getFilename() != null) {
+                        extraLen += fieldLength(header.getField(MIME.CONTENT_TYPE), this.charset);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            extraLen += CR_LF.length(); // end of the header
+            extraLen += CR_LF.length(); // end of the content
         }
+        extraLen += TWO_DASHES.length() + boundaryLength + TWO_DASHES.length() + CR_LF.length();
+        return extraLen;
     }
 
 }
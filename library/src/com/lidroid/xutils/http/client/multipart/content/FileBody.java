@@ -74,10 +74,10 @@ public class FileBody extends AbstractContentBody {
         if (out == null) {
             throw new IllegalArgumentException("Output stream may not be null");
         }
-        BufferedInputStream in = null;
+        FileInputStream in = null;
+        byte[] tmp = IOUtils.obtainBuffer();
         try {
-            in = new BufferedInputStream(new FileInputStream(this.file));
-            byte[] tmp = new byte[4096];
+            in = new FileInputStream(this.file);
             int l;
             while ((l = in.read(tmp)) != -1) {
                 out.write(tmp, 0, l);
@@ -89,6 +89,7 @@ public class FileBody extends AbstractContentBody {
             out.flush();
         } finally {
             IOUtils.closeQuietly(in);
+            IOUtils.recycleBuffer(tmp);
         }
     }
 
@@ -58,8 +58,8 @@ public class InputStreamBody extends AbstractContentBody {
         if (out == null) {
             throw new IllegalArgumentException("Output stream may not be null");
         }
+        byte[] tmp = IOUtils.obtainBuffer();
         try {
-            byte[] tmp = new byte[4096];
             int l;
             while ((l = this.in.read(tmp)) != -1) {
                 out.write(tmp, 0, l);
@@ -71,6 +71,7 @@ public class InputStreamBody extends AbstractContentBody {
             out.flush();
         } finally {
             IOUtils.closeQuietly(this.in);
+            IOUtils.recycleBuffer(tmp);
         }
     }
 
@@ -16,6 +16,7 @@
 package com.lidroid.xutils.http.client.multipart.content;
 
 import com.lidroid.xutils.http.client.multipart.MIME;
+import com.lidroid.xutils.util.IOUtils;
 import org.apache.http.protocol.HTTP;
 
 import java.io.*;
@@ -121,17 +122,16 @@ public class StringBody extends AbstractContentBody {
         if (out == null) {
             throw new IllegalArgumentException("Output stream may not be null");
         }
-        InputStream in = new ByteArrayInputStream(this.content);
-        byte[] tmp = new byte[4096];
-        int l;
-        while ((l = in.read(tmp)) != -1) {
-            out.write(tmp, 0, l);
+        int off = 0;
+        while (off < this.content.length) {
+            int l = Math.min(IOUtils.POOLED_BUFFER_SIZE, this.content.length - off);
+            out.write(this.content, off, l);
+            off += l;
             callBackInfo.pos += l;
             if (!callBackInfo.doCallBack(false)) {
                 throw new InterruptedIOException("cancel");
             }
         }
-        out.flush();
     }
 
     public String getTransferEncoding() {
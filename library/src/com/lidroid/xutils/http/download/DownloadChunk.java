@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.http.download;
+
+import com.lidroid.xutils.db.annotation.Table;
+
+/**
+ * A synced, checksummed range of a download's target file.
+ * Chunk n starts at n * record.chunkSize; only the last chunk may be shorter.
+ */
+@Table(name = "xutils_download_chunk")
+public class DownloadChunk {
+
+    private long id;
+
+    private long recordId;
+
+    private int chunkIndex;
+
+    private int length;
+
+    private long crc;
+
+    public DownloadChunk() {
+    }
+
+    public DownloadChunk(long recordId, int chunkIndex) {
+        this.recordId = recordId;
+        this.chunkIndex = chunkIndex;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(long recordId) {
+        this.recordId = recordId;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    public void setCrc(long crc) {
+        this.crc = crc;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.http.download;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import com.lidroid.xutils.DbUtils;
+import com.lidroid.xutils.HttpUtils;
+import com.lidroid.xutils.db.sqlite.Selector;
+import com.lidroid.xutils.db.sqlite.WhereBuilder;
+import com.lidroid.xutils.exception.DbException;
+import com.lidroid.xutils.http.HttpHandler;
+import com.lidroid.xutils.http.callback.RequestCallBack;
+import com.lidroid.xutils.task.QuotaExecutor;
+import com.lidroid.xutils.task.TaskScheduler;
+import com.lidroid.xutils.util.LogUtils;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A persistent download queue.
+ * The queue, the validators (ETag/Last-Modified) and the crc of every synced chunk are stored
+ * in a DbUtils database, so a download survives the process death and resumes from the last
+ * verified chunk instead of trusting the length of the target file.
+ * <p/>
+ * Downloads interrupted by the process death are restored as CANCELLED, call
+ * {@link #resumeDownload(DownloadRecord, RequestCallBack)} or {@link #resumeAll()} to continue.
+ */
+public class DownloadEngine {
+
+    public final static String DB_NAME = "xUtils_download.db";
+
+    private final static int DEFAULT_MAX_CONCURRENT = 3;
+    private final static int DEFAULT_MAX_PER_HOST = 2;
+    private final static int DEFAULT_CHUNK_SIZE = 1024 * 1024; // 1M
+    private final static int MIN_CHUNK_SIZE = 1024 * 64; // 64K
+
+    private static DownloadEngine instance;
+
+    private final DbUtils db;
+    private final HttpUtils httpUtils;
+    private final QuotaExecutor executor = TaskScheduler.getDefault().newBlockingExecutor(DEFAULT_MAX_CONCURRENT);
+
+    private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+    private int maxPerHost = DEFAULT_MAX_PER_HOST;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private final List<DownloadRecord> records = new ArrayList<DownloadRecord>();
+    private final LinkedList<DownloadRecord> waitingQueue = new LinkedList<DownloadRecord>();
+    private final HashMap<String, Integer> runningPerHost = new HashMap<String, Integer>();
+    private int runningCount = 0;
+
+    private DownloadEngine(Context context) {
+        this.db = DbUtils.create(context, DB_NAME);
+        this.db.configAllowTransaction(true);
+        this.httpUtils = new HttpUtils();
+        restore();
+    }
+
+    public synchronized static DownloadEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new DownloadEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // ***************************************** config *******************************************
+
+    /**
+     * @param maxConcurrent max running downloads of all hosts.
+     */
+    public synchronized DownloadEngine configMaxConcurrent(int maxConcurrent) {
+        if (maxConcurrent > 0) {
+            this.maxConcurrent = maxConcurrent;
+            executor.setQuota(maxConcurrent);
+            schedule();
+        }
+        return this;
+    }
+
+    /**
+     * @param maxPerHost max running downloads of one host.
+     */
+    public synchronized DownloadEngine configMaxPerHost(int maxPerHost) {
+        if (maxPerHost > 0) {
+            this.maxPerHost = maxPerHost;
+            schedule();
+        }
+        return this;
+    }
+
+    /**
+     * Only used by new downloads, the existing records keep their own chunk size.
+     *
+     * @param chunkSize the granularity of checksums and resumes.
+     */
+    public synchronized DownloadEngine configChunkSize(int chunkSize) {
+        if (chunkSize >= MIN_CHUNK_SIZE) {
+            this.chunkSize = chunkSize;
+        }
+        return this;
+    }
+
+    public HttpUtils getHttpUtils() {
+        return httpUtils;
+    }
+
+    /* package */ DbUtils getDbUtils() {
+        return db;
+    }
+
+    // ***************************************** operations *******************************************
+
+    public synchronized List<DownloadRecord> getDownloadRecords() {
+        return new ArrayList<DownloadRecord>(records);
+    }
+
+    /**
+     * Add a download, an unfinished record with the same url and target is resumed instead.
+     */
+    public synchronized DownloadRecord addDownload(String url, String target, boolean autoRename,
+                                                   RequestCallBack<File> callback) throws DbException {
+        if (url == null) throw new IllegalArgumentException("url may not be null");
+        if (target == null) throw new IllegalArgumentException("target may not be null");
+
+        for (DownloadRecord record : records) {
+            if (url.equals(record.getUrl()) && target.equals(record.getTarget()) && !record.isFinished()) {
+                resumeDownload(record, callback);
+                return record;
+            }
+        }
+
+        DownloadRecord record = new DownloadRecord();
+        record.setUrl(url);
+        record.setTarget(target);
+        record.setHost(getHost(url));
+        record.setAutoRename(autoRename);
+        record.setChunkSize(chunkSize);
+        record.setCreateTime(System.currentTimeMillis());
+        record.setState(HttpHandler.State.WAITING);
+        record.setCallback(callback);
+        db.saveBindingId(record);
+        records.add(record);
+
+        waitingQueue.add(record);
+        schedule();
+        return record;
+    }
+
+    public synchronized void resumeDownload(DownloadRecord record, RequestCallBack<File> callback) throws DbException {
+        if (callback != null) {
+            record.setCallback(callback);
+        }
+        if (record.isFinished() || record.getTask() != null || waitingQueue.contains(record)) {
+            return;
+        }
+        record.setState(HttpHandler.State.WAITING);
+        db.update(record, "state");
+        waitingQueue.add(record);
+        schedule();
+    }
+
+    /**
+     * Resume all of the stopped and failed downloads.
+     */
+    public synchronized void resumeAll() throws DbException {
+        for (DownloadRecord record : records) {
+            resumeDownload(record, null);
+        }
+    }
+
+    /**
+     * Stop the download, the synced chunks are kept.
+     */
+    public synchronized void stopDownload(DownloadRecord record) throws DbException {
+        if (waitingQueue.remove(record)) {
+            record.setState(HttpHandler.State.CANCELLED);
+            db.update(record, "state");
+            RequestCallBack<File> callback = record.getCallback();
+            if (callback != null) {
+                callback.onCancelled();
+            }
+        }
+        DownloadTask task = record.getTask();
+        if (task != null) {
+            task.stop();
+        }
+    }
+
+    public synchronized void stopAll() throws DbException {
+        for (DownloadRecord record : records) {
+            stopDownload(record);
+        }
+    }
+
+    public synchronized void removeDownload(DownloadRecord record, boolean deleteFile) throws DbException {
+        stopDownload(record);
+        records.remove(record);
+        db.delete(DownloadChunk.class, WhereBuilder.b("recordId", "=", record.getId()));
+        db.delete(record);
+        if (deleteFile && !TextUtils.isEmpty(record.getTarget())) {
+            File file = new File(record.getTarget());
+            if (file.exists() && !file.delete()) {
+                LogUtils.w("can not delete: " + file);
+            }
+        }
+    }
+
+    // ***************************************** schedule *******************************************
+
+    /**
+     * Start the waiting downloads while the global and the per-host limits allow.
+     */
+    private synchronized void schedule() {
+        Iterator<DownloadRecord> iterator = waitingQueue.iterator();
+        while (iterator.hasNext() && runningCount < maxConcurrent) {
+            DownloadRecord record = iterator.next();
+            String host = record.getHost();
+            Integer hostCount = runningPerHost.get(host);
+            if (hostCount != null && hostCount >= maxPerHost) {
+                continue;
+            }
+            iterator.remove();
+            runningPerHost.put(host, hostCount == null ? 1 : hostCount + 1);
+            runningCount++;
+
+            DownloadTask task = new DownloadTask(this, record);
+            record.setTask(task);
+            task.executeOnExecutor(executor);
+        }
+    }
+
+    /**
+     * Release the running slot of the task, once: by the end of doInBackground,
+     * or by onCancelled if the task was stopped before it ran.
+     *
+     * @return false if already released.
+     */
+    /* package */ synchronized boolean onTaskFinished(DownloadTask task) {
+        if (!task.markFinished()) return false;
+        DownloadRecord record = task.getRecord();
+        if (record.getTask() == task) {
+            record.setTask(null);
+        }
+        runningCount--;
+        String host = record.getHost();
+        Integer hostCount = runningPerHost.get(host);
+        if (hostCount == null || hostCount <= 1) {
+            runningPerHost.remove(host);
+        } else {
+            runningPerHost.put(host, hostCount - 1);
+        }
+        schedule();
+        return true;
+    }
+
+    /**
+     * Load the queue from the database, the running downloads of the last process are stopped.
+     */
+    private void restore() {
+        try {
+            List<DownloadRecord> list = db.findAll(Selector.from(DownloadRecord.class).orderBy("createTime"));
+            if (list == null) return;
+            for (DownloadRecord record : list) {
+                HttpHandler.State state = record.getState();
+                if (state == HttpHandler.State.WAITING || state == HttpHandler.State.STARTED ||
+                        state == HttpHandler.State.LOADING) {
+                    record.setState(HttpHandler.State.CANCELLED);
+                    db.update(record, "state");
+                }
+                records.add(record);
+            }
+        } catch (DbException e) {
+            LogUtils.e(e.getMessage(), e);
+        }
+    }
+
+    private static String getHost(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host;
+        } catch (Throwable e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.http.download;
+
+import com.lidroid.xutils.db.annotation.Column;
+import com.lidroid.xutils.db.annotation.Table;
+import com.lidroid.xutils.db.annotation.Transient;
+import com.lidroid.xutils.http.HttpHandler;
+import com.lidroid.xutils.http.callback.RequestCallBack;
+
+import java.io.File;
+
+/**
+ * Persistent state of one download in the {@link DownloadEngine} queue.
+ * The bytes actually committed to disk are described by its {@link DownloadChunk}s,
+ * completedLength is only a progress snapshot.
+ */
+@Table(name = "xutils_download")
+public class DownloadRecord {
+
+    private long id;
+
+    private String url;
+
+    private String target;
+
+    private String host;
+
+    @Column(column = "state")
+    private int stateValue;
+
+    private String etag;
+
+    private String lastModified;
+
+    private long contentLength = -1;
+
+    private long completedLength;
+
+    private int chunkSize;
+
+    private boolean autoRename;
+
+    private String errorMsg;
+
+    private long createTime;
+
+    @Transient
+    private DownloadTask task;
+
+    @Transient
+    private RequestCallBack<File> callback;
+
+    public DownloadRecord() {
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getStateValue() {
+        return stateValue;
+    }
+
+    public void setStateValue(int stateValue) {
+        this.stateValue = stateValue;
+    }
+
+    public HttpHandler.State getState() {
+        return HttpHandler.State.valueOf(stateValue);
+    }
+
+    public void setState(HttpHandler.State state) {
+        this.stateValue = state.value();
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return total length of the remote file, or -1 if the server didn't tell.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public long getCompletedLength() {
+        return completedLength;
+    }
+
+    public void setCompletedLength(long completedLength) {
+        this.completedLength = completedLength;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public boolean isAutoRename() {
+        return autoRename;
+    }
+
+    public void setAutoRename(boolean autoRename) {
+        this.autoRename = autoRename;
+    }
+
+    public String getErrorMsg() {
+        return errorMsg;
+    }
+
+    public void setErrorMsg(String errorMsg) {
+        this.errorMsg = errorMsg;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(long createTime) {
+        this.createTime = createTime;
+    }
+
+    public boolean isFinished() {
+        return stateValue == HttpHandler.State.SUCCESS.value();
+    }
+
+    /* package */ DownloadTask getTask() {
+        return task;
+    }
+
+    /* package */ void setTask(DownloadTask task) {
+        this.task = task;
+    }
+
+    public RequestCallBack<File> getCallback() {
+        return callback;
+    }
+
+    public void setCallback(RequestCallBack<File> callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DownloadRecord)) return false;
+        return id != 0 && id == ((DownloadRecord) o).id;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id ^ (id >>> 32));
+    }
+}
@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.http.download;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.lidroid.xutils.DbUtils;
+import com.lidroid.xutils.db.sqlite.Selector;
+import com.lidroid.xutils.db.sqlite.WhereBuilder;
+import com.lidroid.xutils.exception.DbException;
+import com.lidroid.xutils.exception.HttpException;
+import com.lidroid.xutils.http.HttpHandler;
+import com.lidroid.xutils.http.RequestParams;
+import com.lidroid.xutils.http.ResponseInfo;
+import com.lidroid.xutils.http.ResponseStream;
+import com.lidroid.xutils.http.callback.RequestCallBack;
+import com.lidroid.xutils.http.callback.RequestCallBackHandler;
+import com.lidroid.xutils.http.client.HttpRequest;
+import com.lidroid.xutils.task.PriorityAsyncTask;
+import com.lidroid.xutils.util.IOUtils;
+import com.lidroid.xutils.util.LogUtils;
+import com.lidroid.xutils.util.OtherUtils;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionReleaseTrigger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Runs one {@link DownloadRecord}.
+ * 1.load the chunks of the record, verify the checksums of the tail chunks and truncate the
+ * target file to the last verified byte.
+ * 2.request the remaining range with If-Range, so a changed remote file is downloaded again.
+ * 3.write the body chunk by chunk, every full chunk is synced to disk before its crc is stored.
+ */
+/* package */ class DownloadTask extends PriorityAsyncTask<Object, Object, Void> implements
+        RequestCallBackHandler {
+
+    /**
+     * How many chunks at the end of the file are re-read and checked before resuming.
+     */
+    private static final int TAIL_VERIFY_CHUNKS = 2;
+
+    private static final int BUFFER_SIZE = 1024 * 8;
+
+    private final DownloadEngine engine;
+    private final DownloadRecord record;
+    private final DbUtils db;
+
+    private volatile boolean stopped = false;
+    private boolean finished = false; // guarded by the engine
+    private long lastUpdateTime;
+
+    /* package */ DownloadTask(DownloadEngine engine, DownloadRecord record) {
+        this.engine = engine;
+        this.record = record;
+        this.db = engine.getDbUtils();
+    }
+
+    /* package */ DownloadRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Called by the engine with its lock held.
+     *
+     * @return false if the task has already been finished.
+     */
+    /* package */ boolean markFinished() {
+        if (finished) return false;
+        finished = true;
+        return true;
+    }
+
+    /**
+     * Stop the download, the synced chunks are kept for the next resume.
+     */
+    /* package */ void stop() {
+        stopped = true;
+        this.cancel(false);
+    }
+
+    @Override
+    protected Void doInBackground(Object... params) {
+        try {
+            if (stopped) return null;
+            updateState(HttpHandler.State.STARTED, null);
+            this.publishProgress(UPDATE_START);
+            lastUpdateTime = SystemClock.uptimeMillis();
+
+            File file = download();
+            if (file != null) {
+                record.setTarget(file.getAbsolutePath());
+                updateState(HttpHandler.State.SUCCESS, null);
+                this.publishProgress(UPDATE_SUCCESS, new ResponseInfo<File>(null, file, false));
+            } else {
+                updateState(HttpHandler.State.CANCELLED, null);
+            }
+        } catch (HttpException e) {
+            updateState(HttpHandler.State.FAILURE, e.getMessage());
+            this.publishProgress(UPDATE_FAILURE, e, e.getMessage());
+        } catch (Throwable e) {
+            HttpException error = new HttpException(e);
+            updateState(HttpHandler.State.FAILURE, e.getMessage());
+            this.publishProgress(UPDATE_FAILURE, error, e.getMessage());
+        } finally {
+            engine.onTaskFinished(this);
+        }
+        return null;
+    }
+
+    /**
+     * @return the downloaded file, or null if the task has been stopped.
+     */
+    private File download() throws HttpException, DbException, IOException {
+        File targetFile = new File(record.getTarget());
+        File dir = targetFile.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new HttpException("can not create dir: " + dir);
+        }
+
+        List<DownloadChunk> chunks = db.findAll(Selector.from(DownloadChunk.class)
+                .where("recordId", "=", record.getId())
+                .orderBy("chunkIndex"));
+        if (chunks == null) {
+            chunks = new ArrayList<DownloadChunk>();
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(targetFile, "rw");
+        ResponseStream responseStream = null;
+        try {
+            long committed = verifyTail(raf, chunks);
+            if (committed > 0 && committed == record.getContentLength()) {
+                return targetFile;
+            }
+
+            RequestParams params = new RequestParams();
+            params.setHeader("Accept-Encoding", "identity");
+            if (committed > 0) {
+                params.setHeader("RANGE", "bytes=" + committed + "-");
+                String validator = !TextUtils.isEmpty(record.getEtag()) ? record.getEtag() : record.getLastModified();
+                if (!TextUtils.isEmpty(validator)) {
+                    params.setHeader("If-Range", validator);
+                }
+            }
+
+            try {
+                responseStream = engine.getHttpUtils().sendSync(HttpRequest.HttpMethod.GET, record.getUrl(), params);
+            } catch (HttpException e) {
+                if (e.getExceptionCode() == 416 && committed > 0) {
+                    return handleRangeNotSatisfiable(e, raf, chunks, committed, targetFile);
+                }
+                throw e;
+            }
+            HttpResponse response = responseStream.getBaseResponse();
+            if (response == null || response.getEntity() == null) {
+                throw new HttpException("response is null");
+            }
+
+            if (committed > 0 && responseStream.getStatusCode() != 206) {
+                // the remote file changed or the server ignored the range, start over.
+                LogUtils.d("download restart from 0: " + record.getUrl());
+                deleteChunks(0);
+                chunks.clear();
+                committed = 0;
+                raf.setLength(0);
+            }
+
+            updateValidators(response, committed);
+            updateState(HttpHandler.State.LOADING, null);
+
+            boolean completed = writeBody(responseStream, raf, chunks, committed);
+            if (!completed) {
+                return null;
+            }
+
+            if (record.isAutoRename()) {
+                String responseFileName = OtherUtils.getFileNameFromHttpResponse(response);
+                if (!TextUtils.isEmpty(responseFileName)) {
+                    IOUtils.closeQuietly(raf);
+                    File newFile = new File(targetFile.getParent(), responseFileName);
+                    while (newFile.exists()) {
+                        newFile = new File(targetFile.getParent(), System.currentTimeMillis() + responseFileName);
+                    }
+                    return targetFile.renameTo(newFile) ? newFile : targetFile;
+                }
+            }
+            return targetFile;
+        } finally {
+            if (responseStream != null) {
+                abortQuietly(responseStream.getBaseStream());
+            }
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Check the committed chunks against the file, drop the broken tail and truncate the file.
+     *
+     * @return the committed length, it is always the sum of the valid chunks.
+     */
+    private long verifyTail(RandomAccessFile raf, List<DownloadChunk> chunks) throws IOException, DbException {
+        int chunkSize = record.getChunkSize();
+        long fileLength = raf.length();
+
+        // keep the continuous chunks which are still backed by the file
+        int validCount = 0;
+        long offset = 0;
+        for (DownloadChunk chunk : chunks) {
+            if (chunk.getChunkIndex() != validCount || offset + chunk.getLength() > fileLength) {
+                break;
+            }
+            offset += chunk.getLength();
+            validCount++;
+            if (chunk.getLength() < chunkSize) {
+                break; // only the last chunk may be a partial one
+            }
+        }
+
+        // re-read the tail chunks, a broken chunk drops everything after it.
+        int verified = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int i = validCount - 1; i >= 0 && verified < TAIL_VERIFY_CHUNKS; i--) {
+            DownloadChunk chunk = chunks.get(i);
+            long crc = computeCrc(raf, (long) i * chunkSize, chunk.getLength(), buffer);
+            if (crc == chunk.getCrc()) {
+                verified++;
+            } else {
+                LogUtils.w("download chunk " + i + " is broken: " + record.getTarget());
+                validCount = i;
+                verified = 0;
+            }
+        }
+
+        if (validCount < chunks.size()) {
+            deleteChunks(validCount);
+            while (chunks.size() > validCount) {
+                chunks.remove(chunks.size() - 1);
+            }
+        }
+
+        long committed = 0;
+        for (DownloadChunk chunk : chunks) {
+            committed += chunk.getLength();
+        }
+        if (fileLength != committed) {
+            raf.setLength(committed);
+        }
+        record.setCompletedLength(committed);
+        return committed;
+    }
+
+    private File handleRangeNotSatisfiable(HttpException e, RandomAccessFile raf,
+                                           List<DownloadChunk> chunks, long committed,
+                                           File targetFile) throws HttpException, DbException, IOException {
+        // "Content-Range: bytes */total" is not exposed by HttpException, trust the stored length.
+        if (record.getContentLength() < 0 && chunks.size() > 0 &&
+                chunks.get(chunks.size() - 1).getLength() < record.getChunkSize()) {
+            record.setContentLength(committed);
+        }
+        if (committed == record.getContentLength()) {
+            return targetFile;
+        }
+        deleteChunks(0);
+        raf.setLength(0);
+        record.setCompletedLength(0);
+        throw e;
+    }
+
+    private void updateValidators(HttpResponse response, long committed) throws DbException {
+        Header etag = response.getFirstHeader("ETag");
+        record.setEtag(etag == null ? null : etag.getValue());
+        Header lastModified = response.getFirstHeader("Last-Modified");
+        record.setLastModified(lastModified == null ? null : lastModified.getValue());
+
+        long total = -1;
+        Header contentRange = response.getFirstHeader("Content-Range");
+        if (contentRange != null) {
+            String value = contentRange.getValue();
+            int index = value == null ? -1 : value.lastIndexOf('/');
+            if (index > 0 && index < value.length() - 1) {
+                try {
+                    total = Long.parseLong(value.substring(index + 1).trim());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        if (total < 0) {
+            HttpEntity entity = response.getEntity();
+            long length = entity.getContentLength();
+            total = length < 0 ? -1 : length + committed;
+        }
+        record.setContentLength(total);
+        db.update(record, "etag", "lastModified", "contentLength");
+    }
+
+    /**
+     * @return true if the body has been read completely.
+     */
+    private boolean writeBody(ResponseStream responseStream, RandomAccessFile raf,
+                              List<DownloadChunk> chunks, long committed) throws IOException, DbException {
+        final int chunkSize = record.getChunkSize();
+        final long total = record.getContentLength();
+        long current = committed;
+
+        // continue writing into the last partial chunk, its crc must cover the whole chunk.
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        DownloadChunk openChunk = null;
+        int openLength = 0;
+        if (chunks.size() > 0) {
+            DownloadChunk last = chunks.get(chunks.size() - 1);
+            if (last.getLength() < chunkSize) {
+                openChunk = last;
+                openLength = last.getLength();
+                long start = (long) last.getChunkIndex() * chunkSize;
+                updateCrc(crc, raf, start, openLength, buffer);
+            }
+        }
+        if (openChunk == null) {
+            openChunk = new DownloadChunk(record.getId(), chunks.size());
+        }
+
+        raf.seek(committed);
+        if (!updateProgress(total, current, true)) {
+            return false;
+        }
+
+        InputStream in = responseStream.getBaseStream();
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            int off = 0;
+            while (off < len) {
+                int n = Math.min(len - off, chunkSize - openLength);
+                raf.write(buffer, off, n);
+                crc.update(buffer, off, n);
+                off += n;
+                openLength += n;
+                if (openLength == chunkSize) {
+                    commitChunk(raf, openChunk, openLength, crc);
+                    openChunk = new DownloadChunk(record.getId(), openChunk.getChunkIndex() + 1);
+                    openLength = 0;
+                    crc.reset();
+                }
+            }
+            current += len;
+            if (!updateProgress(total, current, false)) {
+                break;
+            }
+        }
+
+        boolean completed = !stopped && !isCancelled();
+        if (openLength > 0 && openLength != openChunk.getLength()) {
+            commitChunk(raf, openChunk, openLength, crc);
+        }
+        if (completed && total < 0) {
+            record.setContentLength(current);
+            db.update(record, "contentLength");
+        }
+        updateProgress(total < 0 ? current : total, current, true);
+        return completed;
+    }
+
+    private void commitChunk(RandomAccessFile raf, DownloadChunk chunk, int length, CRC32 crc)
+            throws IOException, DbException {
+        // data first, the chunk row is a promise that the bytes are on disk.
+        raf.getFD().sync();
+        chunk.setLength(length);
+        chunk.setCrc(crc.getValue());
+        db.saveOrUpdate(chunk);
+        record.setCompletedLength((long) chunk.getChunkIndex() * record.getChunkSize() + length);
+        db.update(record, "completedLength");
+    }
+
+    private void deleteChunks(int fromIndex) throws DbException {
+        db.delete(DownloadChunk.class, WhereBuilder.b("recordId", "=", record.getId())
+                .and("chunkIndex", ">=", fromIndex));
+    }
+
+    private static long computeCrc(RandomAccessFile raf, long start, int length, byte[] buffer)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        updateCrc(crc, raf, start, length, buffer);
+        return crc.getValue();
+    }
+
+    private static void updateCrc(CRC32 crc, RandomAccessFile raf, long start, int length, byte[] buffer)
+            throws IOException {
+        raf.seek(start);
+        int remaining = length;
+        while (remaining > 0) {
+            int n = raf.read(buffer, 0, Math.min(buffer.length, remaining));
+            if (n == -1) {
+                throw new IOException("unexpected end of file");
+            }
+            crc.update(buffer, 0, n);
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Closing an unfinished entity stream reads the rest of the body, abort the connection instead.
+     */
+    private static void abortQuietly(InputStream stream) {
+        if (stream instanceof ConnectionReleaseTrigger) {
+            try {
+                ((ConnectionReleaseTrigger) stream).abortConnection();
+                return;
+            } catch (Throwable ignored) {
+            }
+        }
+        IOUtils.closeQuietly(stream);
+    }
+
+    private void updateState(HttpHandler.State state, String errorMsg) {
+        record.setState(state);
+        record.setErrorMsg(errorMsg);
+        try {
+            db.update(record, "state", "errorMsg", "completedLength", "target");
+        } catch (DbException e) {
+            LogUtils.e(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean updateProgress(long total, long current, boolean forceUpdateUI) {
+        if (stopped || isCancelled()) {
+            return false;
+        }
+        RequestCallBack<File> callback = record.getCallback();
+        if (callback != null) {
+            if (forceUpdateUI) {
+                this.publishLoading(total, current);
+            } else {
+                long currTime = SystemClock.uptimeMillis();
+                if (currTime - lastUpdateTime >= callback.getRate()) {
+                    lastUpdateTime = currTime;
+                    this.publishLoading(total, current);
+                }
+            }
+        }
+        return true;
+    }
+
+    private final static int UPDATE_START = 1;
+    private final static int UPDATE_FAILURE = 3;
+    private final static int UPDATE_SUCCESS = 4;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void onProgressUpdate(Object... values) {
+        RequestCallBack<File> callback = record.getCallback();
+        if (callback == null || values == null || values.length == 0) return;
+        switch ((Integer) values[0]) {
+            case UPDATE_START:
+                callback.setRequestUrl(record.getUrl());
+                callback.onStart();
+                break;
+            case UPDATE_FAILURE:
+                if (values.length != 3) return;
+                callback.onFailure((HttpException) values[1], (String) values[2]);
+                break;
+            case UPDATE_SUCCESS:
+                if (values.length != 2) return;
+                callback.onSuccess((ResponseInfo<File>) values[1]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    protected void onLoadingUpdate(long total, long current) {
+        RequestCallBack<File> callback = record.getCallback();
+        if (callback != null) {
+            callback.onLoading(total, current, false);
+        }
+    }
+
+    @Override
+    protected void onCancelled() {
+        // stopped while still queued, doInBackground did not run and did not release the slot
+        if (engine.onTaskFinished(this)) {
+            updateState(HttpHandler.State.CANCELLED, null);
+        }
+        RequestCallBack<File> callback = record.getCallback();
+        if (callback != null) {
+            callback.onCancelled();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.lidroid.xutils.task;
+
+/**
+ * Strict priority order, but a waiting element is boosted one priority every agingMillis,
+ * so e.g. a BG_LOW task passes the fresh UI_TOP tasks after waiting 6 * agingMillis.
+ * Between lanes of the same boosted priority the higher priority wins.
+ */
+public class AgingPolicy implements QueuePolicy {
+
+    private final long agingNanos;
+
+    public AgingPolicy(long agingMillis) {
+        if (agingMillis <= 0) throw new IllegalArgumentException("agingMillis must be positive");
+        this.agingNanos = agingMillis * 1000000L;
+    }
+
+    @Override
+    public int select(long[] headWaitNanos) {
+        int best = -1;
+        long bestRank = Long.MAX_VALUE;
+        for (int i = 0; i < headWaitNanos.length; i++) {
+            if (headWaitNanos[i] < 0) continue;
+            long rank = i - headWaitNanos[i] / agingNanos;
+            if (rank < bestRank) {
+                best = i;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void onTaken(int lane) {
+    }
+}
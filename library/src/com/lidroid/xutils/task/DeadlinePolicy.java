@@ -0,0 +1,48 @@
+package com.lidroid.xutils.task;
+
+/**
+ * Earliest deadline first, the deadline of an element is its enqueue time plus the max wait
+ * of its priority. A low priority element waits longer, but not forever.
+ */
+public class DeadlinePolicy implements QueuePolicy {
+
+    private static final long[] DEFAULT_MAX_WAITS = {50, 100, 200, 500, 2000, 5000, 10000};
+
+    private final long[] maxWaitNanos;
+
+    public DeadlinePolicy() {
+        this(DEFAULT_MAX_WAITS);
+    }
+
+    /**
+     * @param maxWaitMillis indexed by Priority.ordinal().
+     */
+    public DeadlinePolicy(long... maxWaitMillis) {
+        if (maxWaitMillis == null || maxWaitMillis.length != Priority.values().length) {
+            throw new IllegalArgumentException("a max wait for every priority is required");
+        }
+        maxWaitNanos = new long[maxWaitMillis.length];
+        for (int i = 0; i < maxWaitMillis.length; i++) {
+            maxWaitNanos[i] = maxWaitMillis[i] * 1000000L;
+        }
+    }
+
+    @Override
+    public int select(long[] headWaitNanos) {
+        int best = -1;
+        long bestSlack = Long.MAX_VALUE;
+        for (int i = 0; i < headWaitNanos.length; i++) {
+            if (headWaitNanos[i] < 0) continue;
+            long slack = maxWaitNanos[i] - headWaitNanos[i];
+            if (slack < bestSlack) {
+                best = i;
+                bestSlack = slack;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void onTaken(int lane) {
+    }
+}
@@ -0,0 +1,36 @@
+package com.lidroid.xutils.task;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the tasks on the main thread, e.g. the listener of a {@link TaskFuture}.
+ * A task executed on the main thread runs at once.
+ */
+public class MainThreadExecutor implements Executor {
+
+    private static MainThreadExecutor instance;
+
+    public synchronized static MainThreadExecutor getInstance() {
+        if (instance == null) {
+            instance = new MainThreadExecutor();
+        }
+        return instance;
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private MainThreadExecutor() {
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            command.run();
+        } else {
+            handler.post(command);
+        }
+    }
+}
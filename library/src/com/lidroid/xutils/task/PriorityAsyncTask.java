@@ -33,10 +33,11 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
 
     private static final int MESSAGE_POST_RESULT = 0x1;
     private static final int MESSAGE_POST_PROGRESS = 0x2;
+    private static final int MESSAGE_POST_LOADING = 0x3;
 
     private static final InternalHandler sHandler = new InternalHandler();
 
-    public static final Executor sDefaultExecutor = new PriorityExecutor();
+    public static final Executor sDefaultExecutor = TaskScheduler.getDefault().newExecutor(5);
     private final WorkerRunnable<Params, Result> mWorker;
     private final FutureTask<Result> mFuture;
 
@@ -45,8 +46,22 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
     private final AtomicBoolean mCancelled = new AtomicBoolean();
     private final AtomicBoolean mTaskInvoked = new AtomicBoolean();
 
+    // the latest loading progress, guarded by mLoadingLock
+    private final Object mLoadingLock = new Object();
+    private long mLoadingTotal;
+    private long mLoadingCurrent;
+    private boolean mLoadingPosted;
+
+    // System.nanoTime() of the steps, only if traced, see TaskTracer
+    private long mEnqueueTime;
+    private long mStartTime;
+    private long mFinishTime;
+
     private Priority priority;
 
+    private long mTimeout; // milliseconds, 0 for none
+    private volatile long mDeadline; // System.nanoTime(), 0 for none
+
     public Priority getPriority() {
         return priority;
     }
@@ -55,6 +70,29 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
         this.priority = priority;
     }
 
+    public long getTimeout() {
+        return mTimeout;
+    }
+
+    /**
+     * The task is worthless after the timeout from execute:
+     * if still queued, it is dropped and cancelled, {@link #onCancelled(Object)} is called;
+     * if running, {@link #isTimedOut()} returns true, doInBackground should give up.
+     *
+     * @param timeout milliseconds, 0 for none. Must be set before execute.
+     */
+    public void setTimeout(long timeout) {
+        mTimeout = timeout > 0 ? timeout : 0;
+    }
+
+    /**
+     * @return true if the timeout has passed, the cooperative signal for doInBackground.
+     */
+    public final boolean isTimedOut() {
+        long deadline = mDeadline;
+        return deadline != 0 && System.nanoTime() - deadline > 0;
+    }
+
     /**
      * Creates a new asynchronous task. This constructor must be invoked on the UI thread.
      */
@@ -63,7 +101,8 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
         //实现抽象类Callable
         mWorker = new WorkerRunnable<Params, Result>() {
             public Result call() throws Exception {
-                 .set(true);
+                mTaskInvoked.set(true);
+                if (mEnqueueTime != 0) mStartTime = System.nanoTime();
                 android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
                 //noinspection unchecked
                 return postResult(doInBackground(mParams));
@@ -97,6 +136,7 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
     }
 
     private Result postResult(Result result) {
+        if (mEnqueueTime != 0) mFinishTime = System.nanoTime();
         @SuppressWarnings("unchecked") Message message = sHandler.obtainMessage
                 (MESSAGE_POST_RESULT, new AsyncTaskResult<Result>(this, result));
         message.sendToTarget();
@@ -155,6 +195,15 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
     protected void onProgressUpdate(Progress... values) {
     }
 
+    /**
+     * Runs on the UI thread after {@link #publishLoading} is invoked, with the latest values.
+     *
+     * @see #publishLoading
+     */
+    @SuppressWarnings({"UnusedDeclaration"})
+    protected void onLoadingUpdate(long total, long current) {
+    }
+
     /**
      * <p>Runs on the UI thread after {@link #cancel(boolean)} is invoked and
      * {@link #doInBackground(Object[])} has finished.</p>
@@ -321,7 +370,18 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
         mExecuteInvoked = true;
         onPreExecute();
         mWorker.mParams = params;//添加HttpRequest
-        exec.execute(new PriorityRunnable(priority, mFuture));//生成对象代理完成FutureTask
+        if (TaskTracer.isEnabled()) mEnqueueTime = System.nanoTime();
+        if (mTimeout > 0) {
+            mDeadline = (System.nanoTime() + mTimeout * 1000000L) | 1; // never 0
+            exec.execute(new PriorityRunnable(priority, mFuture, mTimeout, new Runnable() {
+                @Override
+                public void run() {
+                    cancel(false);//队列中超时，丢弃
+                }
+            }));
+        } else {
+            exec.execute(new PriorityRunnable(priority, mFuture));//生成对象代理完成FutureTask
+        }
         return this;
     }
 
@@ -346,7 +406,7 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
      * @see #executeOnExecutor(java.util.concurrent.Executor, Object[])
      */
     public static void execute(Runnable runnable, Priority priority) {
-        sDefaultExecutor.execute(new PriorityRunnable(priority, runnable));
+        sDefaultExecutor.execute(new PriorityRunnable(priority, runnable, TaskTracer.isEnabled()));
     }
 
     /**
@@ -370,17 +430,54 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
         }
     }
 
+    /**
+     * Publish the loading progress, {@link #onLoadingUpdate} will be called on the UI thread.
+     * <p/>
+     * The updates are coalesced: while an update is waiting for the UI thread, the next ones
+     * only replace its values, so a fast loop posts at most one message per UI frame.
+     * The updates keep their order relative to {@link #publishProgress}.
+     *
+     * @see #onLoadingUpdate
+     */
+    protected final void publishLoading(long total, long current) {
+        if (isCancelled()) return;
+        synchronized (mLoadingLock) {
+            mLoadingTotal = total;
+            mLoadingCurrent = current;
+            if (mLoadingPosted) return;
+            mLoadingPosted = true;
+        }
+        sHandler.obtainMessage(MESSAGE_POST_LOADING, this).sendToTarget();
+    }
+
+    private void deliverLoading() {
+        long total;
+        long current;
+        synchronized (mLoadingLock) {
+            total = mLoadingTotal;
+            current = mLoadingCurrent;
+            mLoadingPosted = false;
+        }
+        if (!isCancelled()) {
+            onLoadingUpdate(total, current);
+        }
+    }
+
     /**
      * PriorityAsyncTask.java
      * 处理结束请求
      * 调用方法需要子类实现
      */
     private void finish(Result result) {
+        long deliverTime = mEnqueueTime != 0 ? System.nanoTime() : 0;
         if (isCancelled()) {
             onCancelled(result);
         } else {
             onPostExecute(result);
         }
+        if (mEnqueueTime != 0) {
+            TaskTracer.record(getClass(), priority, mEnqueueTime, mStartTime, mFinishTime, deliverTime);
+        }
     }
 
     /**
@@ -395,6 +492,10 @@ public abstract class PriorityAsyncTask<Params, Progress, Result> implements Tas
         @SuppressWarnings({"unchecked", "RawUseOfParameterizedType"})
         @Override
         public void handleMessage(Message msg) {
+            if (msg.what == MESSAGE_POST_LOADING) {//合并后的加载进度
+                ((PriorityAsyncTask<?, ?, ?>) msg.obj).deliverLoading();
+                return;
+            }
             AsyncTaskResult<?> result = (AsyncTaskResult<?>) msg.obj;
             switch (msg.what) {
                 case MESSAGE_POST_RESULT://任务结束
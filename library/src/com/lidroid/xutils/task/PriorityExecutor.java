@@ -1,9 +1,20 @@
 package com.lidroid.xutils.task;
 
+import com.lidroid.xutils.util.LatencyHistogram;
+
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Priority thread pool.
+ * <p/>
+ * The pool keeps poolSize threads and grows up to maxPoolSize when all of the threads are busy,
+ * before the task is queued, so a burst is absorbed by the extra threads instead of waiting
+ * in the queue. The extra threads die after being idle for KEEP_ALIVE seconds.
+ * When maxPoolSize threads are running and the queue (bounded by queueCapacity) is full,
+ * the task is passed to the RejectedExecutionHandler.
+ * <p/>
  * Author: wyouflf
  * Date: 14-5-16
  * Time: 上午11:25
@@ -24,39 +35,208 @@ public class PriorityExecutor implements Executor {
         }
     };
 
-    private final BlockingQueue<Runnable> mPoolWorkQueue = new PriorityObjectBlockingQueue<Runnable>();
+    private final ElasticQueue mPoolWorkQueue;
     private final ThreadPoolExecutor mThreadPoolExecutor;
 
+    private final AtomicInteger mActiveCount = new AtomicInteger();
+    private final AtomicInteger mSubmittedCount = new AtomicInteger(); // queued or running
+    private final AtomicLong mCompletedCount = new AtomicLong();
+    private final AtomicLong mRejectedCount = new AtomicLong();
+
+    private volatile RejectedExecutionHandler mRejectedHandler = new ThreadPoolExecutor.AbortPolicy();
+
     public PriorityExecutor() {
         this(CORE_POOL_SIZE);
     }
 
+    /**
+     * Grows up to MAXIMUM_POOL_SIZE threads, with an unbounded queue.
+     */
     public PriorityExecutor(int poolSize) {
+        this(poolSize, MAXIMUM_POOL_SIZE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param poolSize      threads kept alive.
+     * @param maxPoolSize   max threads while all of the threads are busy (<= MAXIMUM_POOL_SIZE).
+     * @param queueCapacity max waiting tasks, Integer.MAX_VALUE for unbounded.
+     */
+    public PriorityExecutor(int poolSize, int maxPoolSize, int queueCapacity) {
+        if (poolSize <= 0 || maxPoolSize < poolSize) throw new IllegalArgumentException();
+        mPoolWorkQueue = new ElasticQueue(queueCapacity);
         mThreadPoolExecutor = new ThreadPoolExecutor(
                 poolSize,
-                MAXIMUM_POOL_SIZE,
+                Math.min(maxPoolSize, MAXIMUM_POOL_SIZE),
                 KEEP_ALIVE,
                 TimeUnit.SECONDS,
                 mPoolWorkQueue,
-                sThreadFactory);
+                sThreadFactory,
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                        // the queue refused the task to make the pool grow, but the pool is full now.
+                        if (!executor.isShutdown() && mPoolWorkQueue.force(r)) {
+                            return;
+                        }
+                        mSubmittedCount.decrementAndGet();
+                        mRejectedCount.incrementAndGet();
+                        mRejectedHandler.rejectedExecution(r, executor);
+                    }
+                }) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                mActiveCount.incrementAndGet();
+                super.beforeExecute(t, r);
+            }
+
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                super.afterExecute(r, t);
+                mActiveCount.decrementAndGet();
+                mSubmittedCount.decrementAndGet();
+                mCompletedCount.incrementAndGet();
+            }
+        };
+        mPoolWorkQueue.executor = this;
     }
 
     public int getPoolSize() {
         return mThreadPoolExecutor.getCorePoolSize();
     }
 
-    public void setPoolSize(int poolSize) {
+    /**
+     * Set the threads kept alive, maxPoolSize is raised if it is smaller.
+     */
+    public synchronized void setPoolSize(int poolSize) {
         if (poolSize > 0) {
+            poolSize = Math.min(poolSize, MAXIMUM_POOL_SIZE);
+            resize(poolSize, Math.max(poolSize, mThreadPoolExecutor.getMaximumPoolSize()));
+        }
+    }
+
+    public int getMaxPoolSize() {
+        return mThreadPoolExecutor.getMaximumPoolSize();
+    }
+
+    public synchronized void setMaxPoolSize(int maxPoolSize) {
+        if (maxPoolSize > 0) {
+            maxPoolSize = Math.min(maxPoolSize, MAXIMUM_POOL_SIZE);
+            resize(Math.min(mThreadPoolExecutor.getCorePoolSize(), maxPoolSize), maxPoolSize);
+        }
+    }
+
+    // core <= max must hold after every single step.
+    private void resize(int poolSize, int maxPoolSize) {
+        if (maxPoolSize >= mThreadPoolExecutor.getMaximumPoolSize()) {
+            mThreadPoolExecutor.setMaximumPoolSize(maxPoolSize);
+            mThreadPoolExecutor.setCorePoolSize(poolSize);
+        } else {
             mThreadPoolExecutor.setCorePoolSize(poolSize);
+            mThreadPoolExecutor.setMaximumPoolSize(maxPoolSize);
+        }
+    }
+
+    /**
+     * Called when a task can not be queued nor run by a new thread, the default handler throws
+     * RejectedExecutionException. e.g. ThreadPoolExecutor.DiscardOldestPolicy drops the head of
+     * the queue (the most important task), a custom handler may drop the least important one.
+     */
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        if (handler != null) {
+            mRejectedHandler = handler;
         }
     }
 
+    /**
+     * @return true if a new task would wait in the queue.
+     */
     public boolean isBusy() {
-        return mThreadPoolExecutor.getActiveCount() >= mThreadPoolExecutor.getCorePoolSize();
+        return mPoolWorkQueue.size() > 0 ||
+                mActiveCount.get() >= mThreadPoolExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return threads running a task.
+     */
+    public int getActiveCount() {
+        return mActiveCount.get();
+    }
+
+    /**
+     * @return threads alive, including the idle ones.
+     */
+    public int getCurrentPoolSize() {
+        return mThreadPoolExecutor.getPoolSize();
+    }
+
+    public int getLargestPoolSize() {
+        return mThreadPoolExecutor.getLargestPoolSize();
+    }
+
+    public int getQueueSize() {
+        return mPoolWorkQueue.size();
+    }
+
+    public int getQueueSize(Priority priority) {
+        return mPoolWorkQueue.size(priority);
+    }
+
+    /**
+     * @return the milliseconds the tasks of the priority waited in the queue.
+     */
+    public LatencyHistogram getQueueWaitHistogram(Priority priority) {
+        return mPoolWorkQueue.getWaitHistogram(priority);
+    }
+
+    /**
+     * @param policy the order to take the waiting tasks, null for the strict priority order.
+     */
+    public void setQueuePolicy(QueuePolicy policy) {
+        mPoolWorkQueue.setPolicy(policy);
+    }
+
+    public long getCompletedTaskCount() {
+        return mCompletedCount.get();
+    }
+
+    public long getRejectedTaskCount() {
+        return mRejectedCount.get();
     }
 
     @Override
     public void execute(final Runnable r) {
+        mSubmittedCount.incrementAndGet();
         mThreadPoolExecutor.execute(r);
     }
+
+    /**
+     * Refuses the task while the pool can grow and no thread is idle, so ThreadPoolExecutor
+     * starts a new thread for it.
+     */
+    private static class ElasticQueue extends PriorityObjectBlockingQueue<Runnable> {
+        private static final long serialVersionUID = 1L;
+
+        private transient PriorityExecutor executor;
+
+        public ElasticQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public boolean offer(Runnable r) {
+            if (executor != null) {
+                ThreadPoolExecutor pool = executor.mThreadPoolExecutor;
+                int poolSize = pool.getPoolSize();
+                // the submitted count includes this task, an idle thread will take it.
+                if (executor.mSubmittedCount.get() > poolSize && poolSize < pool.getMaximumPoolSize()) {
+                    return false;
+                }
+            }
+            return super.offer(r);
+        }
+
+        public boolean force(Runnable r) {
+            return super.offer(r);
+        }
+    }
 }
@@ -6,19 +6,36 @@
 
 package com.lidroid.xutils.task;
 
+import com.lidroid.xutils.util.LatencyHistogram;
+
 import java.util.AbstractQueue;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.NoSuchElementException;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A blocking queue ordered by {@link Priority}, FIFO within the same priority.
+ * <p/>
+ * Every priority has its own FIFO lane (a LinkedList, ArrayDeque is API 9),
+ * so offer is O(1) and poll is O(number of priorities).
+ * All the operations are guarded by one lock, as ArrayBlockingQueue does.
+ * Elements which are not {@link PriorityObject}s have the priority {@link Priority#DEFAULT}.
+ * <p/>
+ * The lane to take from is the first non-empty one by default, a {@link QueuePolicy}
+ * may choose another, e.g. to keep the low priorities from starving.
+ * The time the elements waited in every lane is recorded, see {@link #getWaitHistogram}.
+ */
 public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
         implements BlockingQueue<E>, java.io.Serializable {
-    private static final long serialVersionUID = -6903933977591709194L;
+    private static final long serialVersionUID = -6903933977591709195L;
+
+    private static final int LANE_COUNT = Priority.values().length;
 
     /**
      * The capacity bound, or Integer.MAX_VALUE if none
@@ -26,422 +43,435 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
     private final int capacity;
 
     /**
-     * Current number of elements
+     * lanes.get(priority.ordinal())
      */
-    private final AtomicInteger count = new AtomicInteger();
+    private transient ArrayList<LinkedList<Node<E>>> lanes;
 
     /**
-     * Head of linked list.
-     * Invariant: head.item == null
+     * waitHistograms[priority.ordinal()]
      */
-    transient Node<E> head;
+    private transient LatencyHistogram[] waitHistograms;
 
     /**
-     * Tail of linked list.
-     * Invariant: last.next == null
+     * the head waits passed to the policy, reused, guarded by lock
      */
-    private transient Node<E> last;
+    private transient long[] headWaitNanos;
 
     /**
-     * Lock held by take, poll, etc
+     * null for the strict priority order, guarded by lock
      */
-    private final ReentrantLock takeLock = new ReentrantLock();
+    private transient QueuePolicy policy;
 
     /**
-     * Wait queue for waiting takes
+     * Current number of elements, guarded by lock
      */
-    private final Condition notEmpty = takeLock.newCondition();
+    private transient int count;
 
     /**
-     * Lock held by put, offer, etc
+     * Main lock guarding all access
      */
-    private final ReentrantLock putLock = new ReentrantLock();
+    private final ReentrantLock lock = new ReentrantLock();
 
     /**
-     * Wait queue for waiting puts
+     * Condition for waiting takes
      */
-    private final Condition notFull = putLock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
 
     /**
-     * Signals a waiting take. Called only from put/offer (which do not
-     * otherwise ordinarily lock takeLock.)
+     * Condition for waiting puts
      */
-    private void signalNotEmpty() {
-        final ReentrantLock takeLock = this.takeLock;
-        takeLock.lock();
+    private final Condition notFull = lock.newCondition();
+
+    public PriorityObjectBlockingQueue() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public PriorityObjectBlockingQueue(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        this.capacity = capacity;
+        initLanes();
+    }
+
+    public PriorityObjectBlockingQueue(Collection<? extends E> c) {
+        this(Integer.MAX_VALUE);
+        for (E e : c) {
+            if (!offer(e)) {
+                throw new IllegalStateException("Queue full");
+            }
+        }
+    }
+
+    private void initLanes() {
+        lanes = new ArrayList<LinkedList<Node<E>>>(LANE_COUNT);
+        waitHistograms = new LatencyHistogram[LANE_COUNT];
+        headWaitNanos = new long[LANE_COUNT];
+        for (int i = 0; i < LANE_COUNT; i++) {
+            lanes.add(new LinkedList<Node<E>>());
+            waitHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private static final class Node<E> {
+        final E item;
+        final long enqueueTime; // System.nanoTime()
+
+        Node(E item, long enqueueTime) {
+            this.item = item;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+
+    public QueuePolicy getPolicy() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            notEmpty.signal();
+            return policy;
         } finally {
-            takeLock.unlock();
+            lock.unlock();
         }
     }
 
     /**
-     * Signals a waiting put. Called only from take/poll.
+     * @param policy null for the strict priority order.
      */
-    private void signalNotFull() {
-        final ReentrantLock putLock = this.putLock;
-        putLock.lock();
+    public void setPolicy(QueuePolicy policy) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            notFull.signal();
+            this.policy = policy;
         } finally {
-            putLock.unlock();
+            lock.unlock();
         }
     }
 
-    private synchronized E opQueue(Node<E> node) {
-        if (node == null) {
-            return _dequeue();
-        } else {
-            _enqueue(node);
-            return null;
+    /**
+     * @return the milliseconds the taken elements of the priority waited in the queue.
+     */
+    public LatencyHistogram getWaitHistogram(Priority priority) {
+        return waitHistograms[priority.ordinal()];
+    }
+
+    private static Priority priorityOf(Object e) {
+        if (e instanceof PriorityObject) {
+            return ((PriorityObject<?>) e).priority;
         }
+        return Priority.DEFAULT;
     }
 
-    // only invoke in opQueue
-    private void _enqueue(Node<E> node) {
-        boolean added = false;
+    // only invoke with lock held
+    private void enqueue(E e) {
+        lanes.get(priorityOf(e).ordinal()).addLast(new Node<E>(e, System.nanoTime()));
+        ++count;
+        notEmpty.signal();
+    }
 
-        Node<E> curr = head;
-        Node<E> temp = null;
+    // only invoke with lock held, count > 0
+    private E dequeue() {
+        long now = System.nanoTime();
+        return dequeue(selectLane(now), now);
+    }
 
-        while (curr.next != null) {
-            temp = curr.next;
-            if (temp.getPriority().ordinal() > node.getPriority().ordinal()) {
-                curr.next = node;
-                node.next = temp;
-                added = true;
-                break;
-            }
-            curr = curr.next;
+    // only invoke with lock held, the lane is not empty
+    private E dequeue(int lane, long now) {
+        Node<E> node = lanes.get(lane).poll();
+        --count;
+        notFull.signal();
+        waitHistograms[lane].record((now - node.enqueueTime) / 1000000L);
+        if (policy != null) {
+            policy.onTaken(lane);
         }
+        return node.item;
+    }
 
-        if (!added) {
-            last = last.next = node;
+    // only invoke with lock held, -1 if empty
+    private int selectLane(long now) {
+        if (count == 0) {
+            return -1;
         }
+        if (policy != null) {
+            long[] headWaitNanos = this.headWaitNanos;
+            for (int i = 0; i < LANE_COUNT; i++) {
+                Node<E> head = lanes.get(i).peek();
+                headWaitNanos[i] = head == null ? -1 : now - head.enqueueTime;
+            }
+            int lane = policy.select(headWaitNanos);
+            if (lane >= 0 && lane < LANE_COUNT && !lanes.get(lane).isEmpty()) {
+                return lane;
+            }
+        }
+        for (int i = 0; i < LANE_COUNT; i++) {
+            if (!lanes.get(i).isEmpty()) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("count is " + count + " but the lanes are empty");
     }
 
-    // only invoke in opQueue
-    private E _dequeue() {
-        // assert takeLock.isHeldByCurrentThread();
-        // assert head.item == null;
-        Node<E> h = head;
-        Node<E> first = h.next;
-        h.next = h; // help GC
-        head = first;
-        E x = first.getValue();
-        first.setValue(null);
-        return x;
+    // only invoke with lock held
+    private E first() {
+        int lane = selectLane(System.nanoTime());
+        return lane < 0 ? null : lanes.get(lane).peek().item;
     }
 
     /**
-     * Locks to prevent both puts and takes.
+     * @return the lane the next element would be taken from, -1 if empty.
      */
-    void fullyLock() {
-        putLock.lock();
-        takeLock.lock();
+    /* package */ int peekLane(long now) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return selectLane(now);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Unlocks to allow both puts and takes.
+     * @return the nanoseconds the head of the lane has waited, -1 if the lane is empty.
      */
-    void fullyUnlock() {
-        takeLock.unlock();
-        putLock.unlock();
-    }
-
-    public PriorityObjectBlockingQueue() {
-        this(Integer.MAX_VALUE);
+    /* package */ long headWaitNanos(int lane, long now) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node<E> head = lanes.get(lane).peek();
+            return head == null ? -1 : now - head.enqueueTime;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public PriorityObjectBlockingQueue(int capacity) {
-        if (capacity <= 0) throw new IllegalArgumentException();
-        this.capacity = capacity;
-        last = head = new Node<E>(null);
+    /**
+     * Takes the head of the lane regardless of the policy, null if the lane is empty.
+     */
+    /* package */ E poll(int lane) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return lanes.get(lane).isEmpty() ? null : dequeue(lane, System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public PriorityObjectBlockingQueue(Collection<? extends E> c) {
-        this(Integer.MAX_VALUE);
-        final ReentrantLock putLock = this.putLock;
-        putLock.lock(); // Never contended, but necessary for visibility
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            int n = 0;
-            for (E e : c) {
-                if (e == null)
-                    throw new NullPointerException();
-                if (n == capacity)
-                    throw new IllegalStateException("Queue full");
-                opQueue(new Node<E>(e));
-                ++n;
-            }
-            count.set(n);
+            return count;
         } finally {
-            putLock.unlock();
+            lock.unlock();
         }
     }
 
-    public int size() {
-        return count.get();
+    /**
+     * @return the number of waiting elements of the priority.
+     */
+    public int size(Priority priority) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return lanes.get(priority.ordinal()).size();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public int remainingCapacity() {
-        return capacity - count.get();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void put(E e) throws InterruptedException {
         if (e == null) throw new NullPointerException();
-        // Note: convention in all put/take/etc is to preset local var
-        // holding count negative to indicate failure unless set.
-        int c = -1;
-        Node<E> node = new Node<E>(e);
-        final ReentrantLock putLock = this.putLock;
-        final AtomicInteger count = this.count;
-        putLock.lockInterruptibly();
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
         try {
-            while (count.get() == capacity) {
+            while (count == capacity) {
                 notFull.await();
             }
-            opQueue(node);
-            c = count.getAndIncrement();
-            if (c + 1 < capacity)
-                notFull.signal();
+            enqueue(e);
         } finally {
-            putLock.unlock();
+            lock.unlock();
         }
-        if (c == 0)
-            signalNotEmpty();
     }
 
     public boolean offer(E e, long timeout, TimeUnit unit)
             throws InterruptedException {
-
         if (e == null) throw new NullPointerException();
         long nanos = unit.toNanos(timeout);
-        int c = -1;
-        final ReentrantLock putLock = this.putLock;
-        final AtomicInteger count = this.count;
-        putLock.lockInterruptibly();
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
         try {
-            while (count.get() == capacity) {
+            while (count == capacity) {
                 if (nanos <= 0)
                     return false;
                 nanos = notFull.awaitNanos(nanos);
             }
-            opQueue(new Node<E>(e));
-            c = count.getAndIncrement();
-            if (c + 1 < capacity)
-                notFull.signal();
+            enqueue(e);
+            return true;
         } finally {
-            putLock.unlock();
+            lock.unlock();
         }
-        if (c == 0)
-            signalNotEmpty();
-        return true;
     }
 
     public boolean offer(E e) {
         if (e == null) throw new NullPointerException();
-        final AtomicInteger count = this.count;
-        if (count.get() == capacity)
-            return false;
-        int c = -1;
-        Node<E> node = new Node<E>(e);
-        final ReentrantLock putLock = this.putLock;
-        putLock.lock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            if (count.get() < capacity) {
-                opQueue(node);
-                c = count.getAndIncrement();
-                if (c + 1 < capacity)
-                    notFull.signal();
+            if (count == capacity) {
+                return false;
             }
+            enqueue(e);
+            return true;
         } finally {
-            putLock.unlock();
+            lock.unlock();
         }
-        if (c == 0)
-            signalNotEmpty();
-        return c >= 0;
     }
 
     public E take() throws InterruptedException {
-        E x;
-        int c = -1;
-        final AtomicInteger count = this.count;
-        final ReentrantLock takeLock = this.takeLock;
-        takeLock.lockInterruptibly();
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
         try {
-            while (count.get() == 0) {
+            while (count == 0) {
                 notEmpty.await();
             }
-            x = opQueue(null);
-            c = count.getAndDecrement();
-            if (c > 1)
-                notEmpty.signal();
+            return dequeue();
         } finally {
-            takeLock.unlock();
+            lock.unlock();
         }
-        if (c == capacity)
-            signalNotFull();
-        return x;
     }
 
     public E poll(long timeout, TimeUnit unit) throws InterruptedException {
-        E x = null;
-        int c = -1;
         long nanos = unit.toNanos(timeout);
-        final AtomicInteger count = this.count;
-        final ReentrantLock takeLock = this.takeLock;
-        takeLock.lockInterruptibly();
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
         try {
-            while (count.get() == 0) {
+            while (count == 0) {
                 if (nanos <= 0)
                     return null;
                 nanos = notEmpty.awaitNanos(nanos);
             }
-            x = opQueue(null);
-            c = count.getAndDecrement();
-            if (c > 1)
-                notEmpty.signal();
+            return dequeue();
         } finally {
-            takeLock.unlock();
+            lock.unlock();
         }
-        if (c == capacity)
-            signalNotFull();
-        return x;
     }
 
     public E poll() {
-        final AtomicInteger count = this.count;
-        if (count.get() == 0)
-            return null;
-        E x = null;
-        int c = -1;
-        final ReentrantLock takeLock = this.takeLock;
-        takeLock.lock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            if (count.get() > 0) {
-                x = opQueue(null);
-                c = count.getAndDecrement();
-                if (c > 1)
-                    notEmpty.signal();
-            }
+            return count == 0 ? null : dequeue();
         } finally {
-            takeLock.unlock();
+            lock.unlock();
         }
-        if (c == capacity)
-            signalNotFull();
-        return x;
     }
 
     public E peek() {
-        if (count.get() == 0)
-            return null;
-        final ReentrantLock takeLock = this.takeLock;
-        takeLock.lock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            Node<E> first = head.next;
-            if (first == null)
-                return null;
-            else
-                return first.getValue();
+            return first();
         } finally {
-            takeLock.unlock();
+            lock.unlock();
         }
     }
 
-    /**
-     * Unlinks interior Node p with predecessor trail.
-     */
-    void unlink(Node<E> p, Node<E> trail) {
-        // assert isFullyLocked();
-        // p.next is not changed, to allow iterators that are
-        // traversing p to maintain their weak-consistency guarantee.
-        p.setValue(null);
-        trail.next = p.next;
-        if (last == p)
-            last = trail;
-        if (count.getAndDecrement() == capacity)
-            notFull.signal();
-    }
-
     public boolean remove(Object o) {
         if (o == null) return false;
-        fullyLock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            for (Node<E> trail = head, p = trail.next;
-                 p != null;
-                 trail = p, p = p.next) {
-                if (o.equals(p.getValue())) {
-                    unlink(p, trail);
+            // the element can only be in the lane of its priority
+            Iterator<Node<E>> it = lanes.get(priorityOf(o).ordinal()).iterator();
+            while (it.hasNext()) {
+                if (o.equals(it.next().item)) {
+                    it.remove();
+                    --count;
+                    notFull.signal();
                     return true;
                 }
             }
             return false;
         } finally {
-            fullyUnlock();
+            lock.unlock();
         }
     }
 
     public boolean contains(Object o) {
         if (o == null) return false;
-        fullyLock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            for (Node<E> p = head.next; p != null; p = p.next)
-                if (o.equals(p.getValue()))
+            for (Node<E> node : lanes.get(priorityOf(o).ordinal())) {
+                if (o.equals(node.item)) {
                     return true;
+                }
+            }
             return false;
         } finally {
-            fullyUnlock();
+            lock.unlock();
         }
     }
 
     public Object[] toArray() {
-        fullyLock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            int size = count.get();
-            Object[] a = new Object[size];
+            Object[] a = new Object[count];
             int k = 0;
-            for (Node<E> p = head.next; p != null; p = p.next)
-                a[k++] = p.getValue();
+            for (LinkedList<Node<E>> lane : lanes) {
+                for (Node<E> node : lane) {
+                    a[k++] = node.item;
+                }
+            }
             return a;
         } finally {
-            fullyUnlock();
+            lock.unlock();
         }
     }
 
     @SuppressWarnings("unchecked")
     public <T> T[] toArray(T[] a) {
-        fullyLock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            int size = count.get();
+            int size = count;
             if (a.length < size)
                 a = (T[]) java.lang.reflect.Array.newInstance
                         (a.getClass().getComponentType(), size);
 
             int k = 0;
-            for (Node<T> p = (Node<T>) head.next; p != null; p = p.next)
-                a[k++] = (T) p.getValue();
+            for (LinkedList<Node<E>> lane : lanes) {
+                for (Node<E> node : lane) {
+                    a[k++] = (T) node.item;
+                }
+            }
             if (a.length > k)
                 a[k] = null;
             return a;
         } finally {
-            fullyUnlock();
+            lock.unlock();
         }
     }
 
     public void clear() {
-        fullyLock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            for (Node<E> p, h = head; (p = h.next) != null; h = p) {
-                h.next = h;
-                p.setValue(null);
+            for (LinkedList<Node<E>> lane : lanes) {
+                lane.clear();
             }
-            head = last;
-            // assert head.item == null && head.next == null;
-            if (count.getAndSet(0) == capacity)
-                notFull.signal();
+            count = 0;
+            notFull.signalAll();
         } finally {
-            fullyUnlock();
+            lock.unlock();
         }
     }
 
@@ -456,127 +486,75 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
             throw new IllegalArgumentException();
         if (maxElements <= 0)
             return 0;
-        boolean signalNotFull = false;
-        final ReentrantLock takeLock = this.takeLock;
-        takeLock.lock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
-            int n = Math.min(maxElements, count.get());
-            // count.get provides visibility to first n Nodes
-            Node<E> h = head;
-            int i = 0;
-            try {
-                while (i < n) {
-                    Node<E> p = h.next;
-                    c.add(p.getValue());
-                    p.setValue(null);
-                    h.next = h;
-                    h = p;
-                    ++i;
-                }
-                return n;
-            } finally {
-                // Restore invariants even if c.add() threw
-                if (i > 0) {
-                    // assert h.item == null;
-                    head = h;
-                    signalNotFull = (count.getAndAdd(-i) == capacity);
-                }
+            int n = Math.min(maxElements, count);
+            for (int i = 0; i < n; i++) {
+                c.add(dequeue());
             }
+            return n;
         } finally {
-            takeLock.unlock();
-            if (signalNotFull)
-                signalNotFull();
+            lock.unlock();
         }
     }
 
+    /**
+     * Returns a weakly consistent iterator over a snapshot of the queue, in priority order
+     * (not the order of the policy).
+     */
     public Iterator<E> iterator() {
-        return new Itr();
+        return new Itr(toArray());
     }
 
     private class Itr implements Iterator<E> {
+        private final Object[] array;
+        private int cursor;
+        private int lastRet = -1;
 
-        private Node<E> current;
-        private Node<E> lastRet;
-        private E currentElement;
-
-        Itr() {
-            fullyLock();
-            try {
-                current = head.next;
-                if (current != null)
-                    currentElement = current.getValue();
-            } finally {
-                fullyUnlock();
-            }
+        Itr(Object[] array) {
+            this.array = array;
         }
 
         public boolean hasNext() {
-            return current != null;
-        }
-
-        private Node<E> nextNode(Node<E> p) {
-            for (; ; ) {
-                Node<E> s = p.next;
-                if (s == p)
-                    return head.next;
-                if (s == null || s.getValue() != null)
-                    return s;
-                p = s;
-            }
+            return cursor < array.length;
         }
 
+        @SuppressWarnings("unchecked")
         public E next() {
-            fullyLock();
-            try {
-                if (current == null)
-                    throw new NoSuchElementException();
-                E x = currentElement;
-                lastRet = current;
-                current = nextNode(current);
-                currentElement = (current == null) ? null : current.getValue();
-                return x;
-            } finally {
-                fullyUnlock();
-            }
+            if (cursor >= array.length)
+                throw new NoSuchElementException();
+            lastRet = cursor;
+            return (E) array[cursor++];
         }
 
         public void remove() {
-            if (lastRet == null)
+            if (lastRet < 0)
                 throw new IllegalStateException();
-            fullyLock();
-            try {
-                Node<E> node = lastRet;
-                lastRet = null;
-                for (Node<E> trail = head, p = trail.next;
-                     p != null;
-                     trail = p, p = p.next) {
-                    if (p == node) {
-                        unlink(p, trail);
-                        break;
-                    }
-                }
-            } finally {
-                fullyUnlock();
-            }
+            PriorityObjectBlockingQueue.this.remove(array[lastRet]);
+            lastRet = -1;
         }
     }
 
     private void writeObject(java.io.ObjectOutputStream s)
             throws java.io.IOException {
-
-        fullyLock();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
         try {
             // Write out any hidden stuff, plus capacity
             s.defaultWriteObject();
 
             // Write out all elements in the proper order.
-            for (Node<E> p = head.next; p != null; p = p.next)
-                s.writeObject(p.getValue());
+            for (LinkedList<Node<E>> lane : lanes) {
+                for (Node<E> node : lane) {
+                    s.writeObject(node.item);
+                }
+            }
 
             // Use trailing null as sentinel
             s.writeObject(null);
         } finally {
-            fullyUnlock();
+            lock.unlock();
         }
     }
 
@@ -588,8 +566,8 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
         // Read in capacity, and any hidden stuff
         s.defaultReadObject();
 
-        count.set(0);
-        last = head = new Node<E>(null);
+        count = 0;
+        initLanes();
 
         // Read in all elements and place in queue
         for (; ; ) {
@@ -601,42 +579,3 @@ public class PriorityObjectBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 }
-
-/**
- * Linked list node class
- */
-class Node<T> {
-    private boolean valueAsT = false;
-    private PriorityObject<?> value;
-    Node<T> next;
-
-    Node(T value) {
-        setValue(value);
-    }
-
-    public Priority getPriority() {
-        return value.priority;
-    }
-
-    @SuppressWarnings("unchecked")
-    public T getValue() {
-        if (value == null) {
-            return null;
-        } else if (valueAsT) {
-            return (T) value;
-        } else {
-            return (T) value.obj;
-        }
-    }
-
-    public void setValue(T value) {
-        if (value == null) {
-            this.value = null;
-        } else if (value instanceof PriorityObject) {
-            this.value = (PriorityObject<?>) value;
-            this.valueAsT = true;
-        } else {
-            this.value = new PriorityObject<T>(Priority.DEFAULT, value);
-        }
-    }
-}
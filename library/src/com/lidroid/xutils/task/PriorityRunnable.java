@@ -7,12 +7,58 @@ package com.lidroid.xutils.task;
  */
 public class PriorityRunnable extends PriorityObject<Runnable> implements Runnable {
 
+    private final long enqueueTime; // only if traced, see TaskTracer
+    private final long deadline; // System.nanoTime(), 0 for none
+    private final Runnable onExpired;
+
     public PriorityRunnable(Priority priority, Runnable obj) {
+        this(priority, obj, false, 0, null);
+    }
+
+    /**
+     * A task still waiting in the queue after the timeout is dropped when dequeued:
+     * onExpired runs instead of the task, e.g. to cancel it.
+     *
+     * @param timeout   milliseconds from now, 0 for none.
+     * @param onExpired may be null.
+     */
+    public PriorityRunnable(Priority priority, Runnable obj, long timeout, Runnable onExpired) {
+        this(priority, obj, false, timeout, onExpired);
+    }
+
+    /* package */ PriorityRunnable(Priority priority, Runnable obj, boolean traced) {
+        this(priority, obj, traced, 0, null);
+    }
+
+    private PriorityRunnable(Priority priority, Runnable obj, boolean traced, long timeout, Runnable onExpired) {
         super(priority, obj);
+        long now = traced || timeout > 0 ? System.nanoTime() : 0;
+        this.enqueueTime = traced ? now : 0;
+        this.deadline = timeout > 0 ? (now + timeout * 1000000L) | 1 : 0; // never 0
+        this.onExpired = onExpired;
+    }
+
+    public boolean isExpired() {
+        return deadline != 0 && System.nanoTime() - deadline > 0;
     }
 
     @Override
     public void run() {
-        this.obj.run();//代理
+        if (isExpired()) {
+            if (onExpired != null) {
+                onExpired.run();
+            }
+            return;
+        }
+        if (enqueueTime == 0) {
+            this.obj.run();//代理
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            this.obj.run();
+        } finally {
+            TaskTracer.record(obj.getClass(), priority, enqueueTime, startTime, System.nanoTime(), 0);
+        }
     }
 }
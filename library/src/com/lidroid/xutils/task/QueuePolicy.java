@@ -0,0 +1,30 @@
+package com.lidroid.xutils.task;
+
+/**
+ * Chooses the priority lane of {@link PriorityObjectBlockingQueue} to take the next element from.
+ * <p/>
+ * The methods are invoked with the lock of the queue held. A policy with state
+ * (e.g. {@link WeightedFairPolicy}) must not be shared by several queues,
+ * except by the queues of a {@link TaskScheduler}, which share its lock.
+ *
+ * @see AgingPolicy
+ * @see WeightedFairPolicy
+ * @see DeadlinePolicy
+ */
+public interface QueuePolicy {
+
+    /**
+     * Must not change the state of the policy, it is also used to peek.
+     *
+     * @param headWaitNanos the nanoseconds the head of every lane has waited,
+     *                      indexed by Priority.ordinal(), -1 for an empty lane.
+     *                      The array is reused by the queue, do not keep it.
+     * @return one of the non-empty lanes.
+     */
+    int select(long[] headWaitNanos);
+
+    /**
+     * Called when an element has been taken from the lane.
+     */
+    void onTaken(int lane);
+}
@@ -0,0 +1,103 @@
+package com.lidroid.xutils.task;
+
+import com.lidroid.xutils.util.LatencyHistogram;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The executor of a subsystem in a {@link TaskScheduler}.
+ * <p/>
+ * At most quota tasks run at the same time, the others wait in priority order
+ * until the quota and a thread of the scheduler are free.
+ * The tasks of a blocking executor only wait for the quota.
+ * <p/>
+ * Author: wyouflf
+ * Date: 14-5-23
+ * Time: 上午11:25
+ */
+public class QuotaExecutor implements Executor {
+
+    private final TaskScheduler scheduler;
+    /* package */ final boolean blocking;
+
+    // guarded by the scheduler
+    /* package */ final PriorityObjectBlockingQueue<Runnable> waitingQueue = new PriorityObjectBlockingQueue<Runnable>();
+    /* package */ int quota;
+    /* package */ int runningCount;
+    /* package */ long completedCount;
+
+    /* package */ QuotaExecutor(TaskScheduler scheduler, int quota, boolean blocking) {
+        if (quota <= 0) throw new IllegalArgumentException();
+        this.scheduler = scheduler;
+        this.blocking = blocking;
+        this.quota = quota;
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        if (runnable == null) throw new NullPointerException();
+        scheduler.submit(this, runnable);
+    }
+
+    public TaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return true if the tasks wait for I/O and are not limited by the pool size of the scheduler.
+     */
+    public boolean isBlocking() {
+        return blocking;
+    }
+
+    public int getQuota() {
+        synchronized (scheduler) {
+            return quota;
+        }
+    }
+
+    public void setQuota(int quota) {
+        if (quota > 0) {
+            synchronized (scheduler) {
+                this.quota = quota;
+                scheduler.onQuotaChanged();
+            }
+        }
+    }
+
+    /**
+     * @return true if a new task would wait.
+     */
+    public boolean isBusy() {
+        synchronized (scheduler) {
+            return waitingQueue.size() > 0 || runningCount >= quota || !blocking && scheduler.isSaturated();
+        }
+    }
+
+    public int getActiveCount() {
+        synchronized (scheduler) {
+            return runningCount;
+        }
+    }
+
+    public int getQueueSize() {
+        return waitingQueue.size();
+    }
+
+    public int getQueueSize(Priority priority) {
+        return waitingQueue.size(priority);
+    }
+
+    /**
+     * @return the milliseconds the tasks of the priority waited before running.
+     */
+    public LatencyHistogram getQueueWaitHistogram(Priority priority) {
+        return waitingQueue.getWaitHistogram(priority);
+    }
+
+    public long getCompletedTaskCount() {
+        synchronized (scheduler) {
+            return completedCount;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.lidroid.xutils.task;
+
+import com.lidroid.xutils.util.LogUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for blocking work (e.g. HttpUtils.sendSync, DbUtils) that should not be limited
+ * by a pool size.
+ * <p/>
+ * The tasks are not limited by any quota of the TaskScheduler, the library itself uses
+ * {@link TaskScheduler#newBlockingExecutor(int)} instead.
+ * <p/>
+ * On a runtime with virtual threads (Java 21+, e.g. tools reusing the library off device)
+ * every task gets a virtual thread, otherwise a cached pool of daemon threads is used.
+ * A PriorityAsyncTask may run on it too: task.executeOnExecutor(TaskExecutors.getPerTaskExecutor()).
+ */
+public class TaskExecutors {
+
+    private TaskExecutors() {
+    }
+
+    private static ExecutorService sPerTaskExecutor;
+
+    /**
+     * @return the shared executor which starts a thread for every task.
+     */
+    public synchronized static ExecutorService getPerTaskExecutor() {
+        if (sPerTaskExecutor == null) {
+            sPerTaskExecutor = newPerTaskExecutor();
+        }
+        return sPerTaskExecutor;
+    }
+
+    /**
+     * @return true if the tasks of {@link #newPerTaskExecutor()} run on virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return getVirtualThreadFactoryMethod() != null;
+    }
+
+    public static ExecutorService newPerTaskExecutor() {
+        Method method = getVirtualThreadFactoryMethod();
+        if (method != null) {
+            try {
+                return (ExecutorService) method.invoke(null);
+            } catch (Throwable e) {
+                LogUtils.w("virtual threads not available", e);
+            }
+        }
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), sThreadFactory);
+    }
+
+    private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "TaskExecutors #" + mCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private static Method getVirtualThreadFactoryMethod() {
+        try {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+}
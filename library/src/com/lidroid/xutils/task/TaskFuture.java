@@ -0,0 +1,296 @@
+package com.lidroid.xutils.task;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A cancellable result which can be chained without callbacks on the main thread:
+ * <pre>
+ * httpUtils.sendAsync(HttpMethod.GET, url)
+ *         .then(parse)                  // runs on the thread of the request
+ *         .then(persist)                // e.g. DbUtils.saveAll, still in background
+ *         .addListener(showResult, MainThreadExecutor.getInstance());
+ * </pre>
+ * Cancelling a future cancels the futures it has been derived from, e.g. aborts the request.
+ */
+public class TaskFuture<V> implements Future<V> {
+
+    public interface Listener<V> {
+        void onComplete(TaskFuture<V> future);
+    }
+
+    public interface Transform<V, R> {
+        R apply(V value) throws Exception;
+    }
+
+    private static final int PENDING = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+    private static final int CANCELLED = 3;
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // guarded by this
+    private int state = PENDING;
+    private V value;
+    private Throwable failure;
+    private Runnable cancelHook;
+    private ArrayList<Runnable> listeners = new ArrayList<Runnable>(1);
+
+    public TaskFuture() {
+    }
+
+    public static <V> TaskFuture<V> completed(V value) {
+        TaskFuture<V> future = new TaskFuture<V>();
+        future.complete(value);
+        return future;
+    }
+
+    /**
+     * @param cancelHook called once if the future is cancelled, e.g. to abort the request.
+     */
+    public TaskFuture<V> onCancel(Runnable cancelHook) {
+        boolean cancelled;
+        synchronized (this) {
+            cancelled = state == CANCELLED;
+            if (!cancelled) {
+                this.cancelHook = cancelHook;
+            }
+        }
+        if (cancelled && cancelHook != null) {
+            cancelHook.run();
+        }
+        return this;
+    }
+
+    /**
+     * @return false if the future is already done.
+     */
+    public boolean complete(V value) {
+        synchronized (this) {
+            if (state != PENDING) return false;
+            this.value = value;
+            this.state = SUCCESS;
+            this.notifyAll();
+        }
+        fireListeners();
+        return true;
+    }
+
+    /**
+     * @return false if the future is already done.
+     */
+    public boolean fail(Throwable failure) {
+        synchronized (this) {
+            if (state != PENDING) return false;
+            this.failure = failure;
+            this.state = FAILURE;
+            this.notifyAll();
+        }
+        fireListeners();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Runnable hook;
+        synchronized (this) {
+            if (state != PENDING) return false;
+            this.state = CANCELLED;
+            hook = cancelHook;
+            cancelHook = null;
+            this.notifyAll();
+        }
+        if (hook != null) {
+            hook.run();
+        }
+        fireListeners();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    public synchronized boolean isSuccess() {
+        return state == SUCCESS;
+    }
+
+    /**
+     * @return the failure, null if not failed.
+     */
+    public synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while (state == PENDING) {
+            this.wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized V get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == PENDING) {
+            long nanos = deadline - System.nanoTime();
+            if (nanos <= 0) throw new TimeoutException();
+            TimeUnit.NANOSECONDS.timedWait(this, nanos);
+        }
+        return getResult();
+    }
+
+    // only invoke with the lock held, when done
+    private V getResult() throws ExecutionException {
+        if (state == CANCELLED) throw new CancellationException();
+        if (state == FAILURE) throw new ExecutionException(failure);
+        return value;
+    }
+
+    /**
+     * The listener is called on the executor when the future is done (at once if already done).
+     */
+    public TaskFuture<V> addListener(final Listener<V> listener, final Executor executor) {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onComplete(TaskFuture.this);
+                    }
+                });
+            }
+        };
+        synchronized (this) {
+            if (listeners != null) {
+                listeners.add(runnable);
+                return this;
+            }
+        }
+        runnable.run();
+        return this;
+    }
+
+    /**
+     * Transform the value on the thread which completes this future.
+     */
+    public <R> TaskFuture<R> then(Transform<? super V, R> transform) {
+        return then(transform, DIRECT_EXECUTOR);
+    }
+
+    /**
+     * Transform the value on the executor, the failure and the cancellation are passed on.
+     */
+    public <R> TaskFuture<R> then(final Transform<? super V, R> transform, Executor executor) {
+        final TaskFuture<R> result = derive();
+        addListener(new Listener<V>() {
+            @Override
+            public void onComplete(TaskFuture<V> future) {
+                if (!future.passOn(result)) {
+                    try {
+                        result.complete(transform.apply(future.value));
+                    } catch (Throwable e) {
+                        result.fail(e);
+                    }
+                }
+            }
+        }, executor);
+        return result;
+    }
+
+    /**
+     * Chain a dependent call, e.g. a request which needs the result of this one.
+     */
+    public <R> TaskFuture<R> thenCompose(final Transform<? super V, TaskFuture<R>> transform) {
+        final TaskFuture<R> result = derive();
+        addListener(new Listener<V>() {
+            @Override
+            public void onComplete(TaskFuture<V> future) {
+                if (future.passOn(result)) return;
+                try {
+                    final TaskFuture<R> next = transform.apply(future.value);
+                    result.onCancel(new Runnable() {
+                        @Override
+                        public void run() {
+                            next.cancel(true);
+                        }
+                    });
+                    next.addListener(new Listener<R>() {
+                        @Override
+                        public void onComplete(TaskFuture<R> future) {
+                            if (!future.passOn(result)) {
+                                result.complete(future.value);
+                            }
+                        }
+                    }, DIRECT_EXECUTOR);
+                } catch (Throwable e) {
+                    result.fail(e);
+                }
+            }
+        }, DIRECT_EXECUTOR);
+        return result;
+    }
+
+    // a future derived from this one, cancelling it cancels this one.
+    private <R> TaskFuture<R> derive() {
+        return new TaskFuture<R>().onCancel(new Runnable() {
+            @Override
+            public void run() {
+                cancel(true);
+            }
+        });
+    }
+
+    /**
+     * @return true if this future failed or was cancelled, which has been passed on to the other.
+     */
+    private boolean passOn(TaskFuture<?> other) {
+        int state;
+        Throwable failure;
+        synchronized (this) {
+            state = this.state;
+            failure = this.failure;
+        }
+        if (state == FAILURE) {
+            other.fail(failure);
+            return true;
+        } else if (state == CANCELLED) {
+            other.cancel(true);
+            return true;
+        }
+        return false;
+    }
+
+    private void fireListeners() {
+        ArrayList<Runnable> listeners;
+        synchronized (this) {
+            listeners = this.listeners;
+            this.listeners = null;
+        }
+        if (listeners != null) {
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.lidroid.xutils.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A group of tasks which succeed or fail together.
+ * <p/>
+ * The tasks forked in the group run concurrently, {@link #joinAll()} waits for all of them.
+ * When a task fails, the join is interrupted or timed out, the other tasks are cancelled,
+ * so no task of the group outlives the join. e.g. fetch N urls, cancel the rest on first failure:
+ * <pre>
+ * TaskGroup&lt;String&gt; group = new TaskGroup&lt;String&gt;();
+ * for (String url : urls) group.fork(callableOf(url));
+ * List&lt;String&gt; results = group.joinAll();
+ * </pre>
+ */
+public class TaskGroup<T> {
+
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final Executor executor;
+    private final ArrayList<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>();
+    private final LinkedBlockingQueue<Future<T>> completedTasks = new LinkedBlockingQueue<Future<T>>();
+    private boolean joined = false;
+
+    /**
+     * Runs at most DEFAULT_PARALLELISM tasks at the same time, on the blocking executors of the default TaskScheduler.
+     */
+    public TaskGroup() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param parallelism max running tasks of the group, the group has its own quota
+     *                    so a task forking another group does not wait for its own slot.
+     */
+    public TaskGroup(int parallelism) {
+        this(TaskScheduler.getDefault().newBlockingExecutor(parallelism));
+    }
+
+    public TaskGroup(Executor executor) {
+        if (executor == null) throw new IllegalArgumentException("executor may not be null");
+        this.executor = executor;
+    }
+
+    public Future<T> fork(Callable<T> task) {
+        return fork(task, null);
+    }
+
+    /**
+     * @param onCancel called when the task is cancelled, e.g. to abort a blocking request,
+     *                 which the interrupt alone can not stop.
+     */
+    public synchronized Future<T> fork(Callable<T> task, final Runnable onCancel) {
+        if (joined) throw new IllegalStateException("the group has been joined");
+        FutureTask<T> future = new FutureTask<T>(task) {
+            @Override
+            protected void done() {
+                completedTasks.add(this);
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled && onCancel != null) {
+                    onCancel.run();
+                }
+                return cancelled;
+            }
+        };
+        tasks.add(future);
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * @return the results in the fork order.
+     * @throws ExecutionException the failure of the first failed task, the others are cancelled.
+     */
+    public List<T> joinAll() throws InterruptedException, ExecutionException {
+        try {
+            return joinAll(-1, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e); // never happens without timeout
+        }
+    }
+
+    /**
+     * @param timeout a negative value for no timeout.
+     * @return the results in the fork order.
+     * @throws ExecutionException the failure of the first failed task, the others are cancelled.
+     * @throws TimeoutException   the unfinished tasks have been cancelled.
+     */
+    public List<T> joinAll(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        List<FutureTask<T>> tasks;
+        synchronized (this) {
+            joined = true;
+            tasks = new ArrayList<FutureTask<T>>(this.tasks);
+        }
+        long deadline = timeout < 0 ? 0 : System.nanoTime() + unit.toNanos(timeout);
+        boolean success = false;
+        try {
+            for (int remaining = tasks.size(); remaining > 0; remaining--) {
+                Future<T> future;
+                if (timeout < 0) {
+                    future = completedTasks.take();
+                } else {
+                    future = completedTasks.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (future == null) throw new TimeoutException();
+                }
+                if (!future.isCancelled()) {
+                    future.get(); // throws the failure
+                }
+            }
+
+            ArrayList<T> results = new ArrayList<T>(tasks.size());
+            for (FutureTask<T> task : tasks) {
+                results.add(task.get());
+            }
+            success = true;
+            return results;
+        } finally {
+            if (!success) {
+                cancelAll();
+            }
+        }
+    }
+
+    public synchronized void cancelAll() {
+        for (FutureTask<T> task : tasks) {
+            task.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.lidroid.xutils.task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The scheduler shared by the background work of the library.
+ * <p/>
+ * One pool of threads runs the tasks of all the {@link QuotaExecutor}s. A free thread takes
+ * the most important waiting task of any executor, so a saturated subsystem uses the threads
+ * the others don't need, instead of every subsystem keeping its own idle threads.
+ * Every executor has a quota of running tasks.
+ * <p/>
+ * The tasks of {@link #newExecutor} share poolSize threads, the last reservedThreads of them
+ * only run the UI priorities (UI_TOP, UI_NORMAL, UI_LOW), so background work never starves the UI.
+ * The tasks of {@link #newBlockingExecutor} (http requests, downloads, disk cache...) wait on
+ * the network or the disk, not on the CPU: they are only limited by the quota of their executor,
+ * so slow downloads neither take the threads of the disk cache hits nor block a task waiting
+ * for another executor. Their CPU work (e.g. the bitmap decoding after the read) is handed to
+ * an executor of {@link #newExecutor}, so poolSize and reservedThreads bound it.
+ * <p/>
+ * The waiting tasks are taken in priority order, or in the order of the {@link QueuePolicy}
+ * of the scheduler, which is used by the queues of all the executors.
+ * <p/>
+ * Author: wyouflf
+ * Date: 14-5-23
+ * Time: 上午11:25
+ */
+public class TaskScheduler {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_POOL_SIZE = Math.max(6, Math.min(CPU_COUNT * 2, 12));
+    private static final int DEFAULT_RESERVED_THREADS = 2;
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private static TaskScheduler sDefault;
+
+    public synchronized static TaskScheduler getDefault() {
+        if (sDefault == null) {
+            sDefault = new TaskScheduler(DEFAULT_POOL_SIZE, DEFAULT_RESERVED_THREADS);
+        }
+        return sDefault;
+    }
+
+    private final PriorityExecutor mExecutor;
+
+    // guarded by this, the state of the QuotaExecutors too.
+    private int mPoolSize;
+    private int mReservedThreads;
+    private int mRunningCount;
+    private int mRunningBackgroundCount;
+    private int mRunningBlockingCount;
+    private final ArrayList<QuotaExecutor> mWaitingExecutors = new ArrayList<QuotaExecutor>();
+    private int mNextIndex; // round robin between the executors of the same priority
+    // reused by dispatch()
+    private int[] mExecutorLanes = new int[8];
+    private final long[] mHeadWaitNanos = new long[PRIORITIES.length];
+    private QueuePolicy mPolicy;
+
+    /**
+     * @param poolSize        threads shared by the executors.
+     * @param reservedThreads threads only for the UI priorities.
+     */
+    public TaskScheduler(int poolSize, int reservedThreads) {
+        if (poolSize <= 0 || reservedThreads < 0 || reservedThreads >= poolSize) {
+            throw new IllegalArgumentException();
+        }
+        mPoolSize = poolSize;
+        mReservedThreads = reservedThreads;
+        // the threads above CPU_COUNT are started while the pool is busy and die when idle,
+        // the blocking executors are not bounded by poolSize.
+        mExecutor = new PriorityExecutor(Math.min(CPU_COUNT, poolSize));
+    }
+
+    /**
+     * @param quota max running tasks of the executor.
+     */
+    public QuotaExecutor newExecutor(int quota) {
+        return new QuotaExecutor(this, quota, false);
+    }
+
+    /**
+     * An executor of blocking I/O, its tasks do not count in poolSize.
+     *
+     * @param quota max running tasks of the executor.
+     */
+    public QuotaExecutor newBlockingExecutor(int quota) {
+        return new QuotaExecutor(this, quota, true);
+    }
+
+    public synchronized int getPoolSize() {
+        return mPoolSize;
+    }
+
+    public synchronized void setPoolSize(int poolSize) {
+        if (poolSize > mReservedThreads) {
+            mPoolSize = poolSize;
+            mExecutor.setPoolSize(Math.min(CPU_COUNT, poolSize));
+            dispatch();
+        }
+    }
+
+    public synchronized int getReservedThreads() {
+        return mReservedThreads;
+    }
+
+    public synchronized void setReservedThreads(int reservedThreads) {
+        if (reservedThreads >= 0 && reservedThreads < mPoolSize) {
+            mReservedThreads = reservedThreads;
+            dispatch();
+        }
+    }
+
+    public synchronized QueuePolicy getQueuePolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * @param policy null for the strict priority order.
+     */
+    public synchronized void setQueuePolicy(QueuePolicy policy) {
+        mPolicy = policy;
+        for (QuotaExecutor executor : mWaitingExecutors) {
+            executor.waitingQueue.setPolicy(policy);
+        }
+        dispatch();
+    }
+
+    /**
+     * @return tasks of the non-blocking executors running in the shared threads.
+     */
+    public synchronized int getRunningCount() {
+        return mRunningCount;
+    }
+
+    /**
+     * @return tasks of the blocking executors running.
+     */
+    public synchronized int getRunningBlockingCount() {
+        return mRunningBlockingCount;
+    }
+
+    /**
+     * @return true if poolSize threads are running, the blocking executors are not limited by it.
+     */
+    public synchronized boolean isSaturated() {
+        return mRunningCount >= mPoolSize;
+    }
+
+    /* package */
+    synchronized void submit(QuotaExecutor executor, Runnable runnable) {
+        if (executor.waitingQueue.getPolicy() != mPolicy) {
+            executor.waitingQueue.setPolicy(mPolicy);
+        }
+        executor.waitingQueue.offer(runnable);
+        if (!mWaitingExecutors.contains(executor)) {
+            mWaitingExecutors.add(executor);
+        }
+        dispatch();
+    }
+
+    /* package */
+    synchronized void onQuotaChanged() {
+        dispatch();
+    }
+
+    // only invoke with the lock held
+    private void dispatch() {
+        while (!mWaitingExecutors.isEmpty()) {
+            boolean poolAllowed = mRunningCount < mPoolSize;
+            boolean backgroundAllowed = mRunningBackgroundCount < mPoolSize - mReservedThreads;
+            long now = System.nanoTime();
+            int size = mWaitingExecutors.size();
+            if (mExecutorLanes.length < size) {
+                mExecutorLanes = new int[Math.max(size, mExecutorLanes.length * 2)];
+            }
+            int[] executorLanes = mExecutorLanes;
+            long[] headWaitNanos = mHeadWaitNanos;
+            Arrays.fill(headWaitNanos, -1);
+            boolean found = false;
+            // the lane every executor would take from, and the longest wait of every lane.
+            for (int i = 0; i < size; i++) {
+                QuotaExecutor executor = mWaitingExecutors.get(i);
+                int lane = executor.runningCount < executor.quota ? executor.waitingQueue.peekLane(now) : -1;
+                if (lane >= 0 && !executor.blocking
+                        && (!poolAllowed || !backgroundAllowed && !isUiPriority(PRIORITIES[lane]))) {
+                    lane = -1;
+                }
+                executorLanes[i] = lane;
+                if (lane >= 0) {
+                    headWaitNanos[lane] = Math.max(headWaitNanos[lane], executor.waitingQueue.headWaitNanos(lane, now));
+                    found = true;
+                }
+            }
+            if (!found) break;
+
+            int bestLane = mPolicy == null ? -1 : mPolicy.select(headWaitNanos);
+            if (bestLane < 0 || bestLane >= headWaitNanos.length || headWaitNanos[bestLane] < 0) {
+                bestLane = 0;
+                while (headWaitNanos[bestLane] < 0) bestLane++;
+            }
+            int bestIndex = 0;
+            for (int i = 0; i < size; i++) {
+                int index = (mNextIndex + i) % size;
+                if (executorLanes[index] == bestLane) {
+                    bestIndex = index;
+                    break;
+                }
+            }
+            Priority bestPriority = PRIORITIES[bestLane];
+
+            QuotaExecutor executor = mWaitingExecutors.get(bestIndex);
+            Runnable runnable = executor.waitingQueue.poll(bestLane);
+            if (executor.waitingQueue.isEmpty()) {
+                mWaitingExecutors.remove(bestIndex);
+                mNextIndex = bestIndex;
+            } else {
+                mNextIndex = bestIndex + 1;
+            }
+            start(executor, runnable, bestPriority);
+        }
+    }
+
+    // only invoke with the lock held
+    private void start(final QuotaExecutor executor, final Runnable runnable, Priority priority) {
+        final boolean background = !executor.blocking && !isUiPriority(priority);
+        if (executor.blocking) {
+            mRunningBlockingCount++;
+        } else {
+            mRunningCount++;
+        }
+        if (background) mRunningBackgroundCount++;
+        executor.runningCount++;
+        mExecutor.execute(new PriorityRunnable(priority, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } finally {
+                    onFinished(executor, background);
+                }
+            }
+        }));
+    }
+
+    private synchronized void onFinished(QuotaExecutor executor, boolean background) {
+        if (executor.blocking) {
+            mRunningBlockingCount--;
+        } else {
+            mRunningCount--;
+        }
+        if (background) mRunningBackgroundCount--;
+        executor.runningCount--;
+        executor.completedCount++;
+        dispatch();
+    }
+
+    private static boolean isUiPriority(Priority priority) {
+        return priority.ordinal() < Priority.DEFAULT.ordinal();
+    }
+}
@@ -0,0 +1,152 @@
+package com.lidroid.xutils.task;
+
+import com.lidroid.xutils.util.LatencyHistogram;
+import com.lidroid.xutils.util.LogUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Traces the PriorityAsyncTasks (and the Runnables of PriorityAsyncTask.execute):
+ * the time waiting in the queue, running doInBackground, and waiting for the main thread
+ * to deliver the result, per priority and per task class.
+ * <p/>
+ * Disabled by default, then a task only reads a volatile flag.
+ */
+public class TaskTracer {
+
+    private TaskTracer() {
+    }
+
+    public interface Exporter {
+        /**
+         * Called for every traced task, on the main thread for a PriorityAsyncTask,
+         * on the worker thread for a Runnable. The durations are in nanoseconds, -1 if unknown.
+         */
+        void onTaskTraced(Class<?> taskClass, Priority priority, long queueNanos, long runNanos, long deliverNanos);
+    }
+
+    public static class Stats {
+        private final LatencyHistogram queueHistogram = new LatencyHistogram();
+        private final LatencyHistogram runHistogram = new LatencyHistogram();
+        private final LatencyHistogram deliverHistogram = new LatencyHistogram();
+
+        /**
+         * @return the milliseconds from execute to doInBackground.
+         */
+        public LatencyHistogram getQueueHistogram() {
+            return queueHistogram;
+        }
+
+        /**
+         * @return the milliseconds of doInBackground.
+         */
+        public LatencyHistogram getRunHistogram() {
+            return runHistogram;
+        }
+
+        /**
+         * @return the milliseconds from the end of doInBackground to onPostExecute.
+         */
+        public LatencyHistogram getDeliverHistogram() {
+            return deliverHistogram;
+        }
+
+        private void record(long queueNanos, long runNanos, long deliverNanos) {
+            if (queueNanos >= 0) queueHistogram.record(queueNanos / 1000000L);
+            if (runNanos >= 0) runHistogram.record(runNanos / 1000000L);
+            if (deliverNanos >= 0) deliverHistogram.record(deliverNanos / 1000000L);
+        }
+
+        public void reset() {
+            queueHistogram.reset();
+            runHistogram.reset();
+            deliverHistogram.reset();
+        }
+
+        @Override
+        public String toString() {
+            return "queue: " + queueHistogram + ", run: " + runHistogram + ", deliver: " + deliverHistogram;
+        }
+    }
+
+    private static volatile boolean sEnabled = false;
+    private static volatile Exporter sExporter;
+
+    private static final Stats[] sPriorityStats = new Stats[Priority.values().length];
+    private static final ConcurrentHashMap<Class<?>, Stats> sClassStats = new ConcurrentHashMap<Class<?>, Stats>();
+
+    static {
+        for (int i = 0; i < sPriorityStats.length; i++) {
+            sPriorityStats[i] = new Stats();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * @param exporter null to remove.
+     */
+    public static void setExporter(Exporter exporter) {
+        sExporter = exporter;
+    }
+
+    public static Stats getStats(Priority priority) {
+        return sPriorityStats[priority.ordinal()];
+    }
+
+    /**
+     * @return null if no task of the class has been traced.
+     */
+    public static Stats getStats(Class<?> taskClass) {
+        return sClassStats.get(taskClass);
+    }
+
+    public static Map<Class<?>, Stats> getAllClassStats() {
+        return new HashMap<Class<?>, Stats>(sClassStats);
+    }
+
+    public static void reset() {
+        for (Stats stats : sPriorityStats) {
+            stats.reset();
+        }
+        sClassStats.clear();
+    }
+
+    /**
+     * The times are System.nanoTime(), 0 if the step did not happen (e.g. cancelled in the queue).
+     */
+    /* package */
+    static void record(Class<?> taskClass, Priority priority,
+                       long enqueueTime, long startTime, long finishTime, long deliverTime) {
+        if (priority == null) priority = Priority.DEFAULT;
+        long queueNanos = startTime > 0 ? startTime - enqueueTime : -1;
+        long runNanos = startTime > 0 && finishTime > 0 ? finishTime - startTime : -1;
+        long deliverNanos = finishTime > 0 && deliverTime > 0 ? deliverTime - finishTime : -1;
+
+        sPriorityStats[priority.ordinal()].record(queueNanos, runNanos, deliverNanos);
+        Stats stats = sClassStats.get(taskClass);
+        if (stats == null) {
+            Stats newStats = new Stats();
+            stats = sClassStats.putIfAbsent(taskClass, newStats);
+            if (stats == null) stats = newStats;
+        }
+        stats.record(queueNanos, runNanos, deliverNanos);
+
+        Exporter exporter = sExporter;
+        if (exporter != null) {
+            try {
+                exporter.onTaskTraced(taskClass, priority, queueNanos, runNanos, deliverNanos);
+            } catch (Throwable e) {
+                LogUtils.e(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.lidroid.xutils.task;
+
+/**
+ * Every non-empty lane gets a share of the taken elements proportional to its weight
+ * (start-time fair queuing), no lane starves while the others are busy.
+ * A lane which has been empty gets no credit for the idle time.
+ */
+public class WeightedFairPolicy implements QueuePolicy {
+
+    private static final int[] DEFAULT_WEIGHTS = {64, 32, 16, 8, 4, 2, 1};
+
+    private final double[] costs; // 1 / weight
+    private final double[] finishTimes;
+    private double virtualTime;
+
+    public WeightedFairPolicy() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /**
+     * @param weights indexed by Priority.ordinal().
+     */
+    public WeightedFairPolicy(int... weights) {
+        if (weights == null || weights.length != Priority.values().length) {
+            throw new IllegalArgumentException("a weight for every priority is required");
+        }
+        costs = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] <= 0) throw new IllegalArgumentException("weights must be positive");
+            costs[i] = 1.0 / weights[i];
+        }
+        finishTimes = new double[weights.length];
+    }
+
+    @Override
+    public int select(long[] headWaitNanos) {
+        int best = -1;
+        double bestStart = Double.MAX_VALUE;
+        for (int i = 0; i < headWaitNanos.length; i++) {
+            if (headWaitNanos[i] < 0) continue;
+            double start = Math.max(finishTimes[i], virtualTime);
+            if (start < bestStart) {
+                best = i;
+                bestStart = start;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void onTaken(int lane) {
+        double start = Math.max(finishTimes[lane], virtualTime);
+        finishTimes[lane] = start + costs[lane];
+        virtualTime = start;
+    }
+}
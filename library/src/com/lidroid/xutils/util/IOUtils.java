@@ -18,6 +18,7 @@ package com.lidroid.xutils.util;
 import android.database.Cursor;
 
 import java.io.Closeable;
+import java.util.LinkedList;
 
 /**
  * Author: wyouflf
@@ -29,6 +30,32 @@ public class IOUtils {
     private IOUtils() {
     }
 
+    public final static int POOLED_BUFFER_SIZE = 1024 * 32;
+    private final static int MAX_POOLED_BUFFERS = 8;
+    private final static LinkedList<byte[]> bufferPool = new LinkedList<byte[]>();
+
+    /**
+     * 获取一个POOLED_BUFFER_SIZE大小的缓冲区，用完后调用recycleBuffer归还
+     */
+    public static byte[] obtainBuffer() {
+        synchronized (bufferPool) {
+            byte[] buffer = bufferPool.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[POOLED_BUFFER_SIZE];
+    }
+
+    public static void recycleBuffer(byte[] buffer) {
+        if (buffer == null || buffer.length != POOLED_BUFFER_SIZE) return;
+        synchronized (bufferPool) {
+            if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+                bufferPool.add(buffer);
+            }
+        }
+    }
+
     public static void closeQuietly(Closeable closeable) {
         if (closeable != null) {
             try {
@@ -163,6 +163,17 @@ public class OtherUtils {
         return false;
     }
 
+    /**
+     * 读完并丢弃响应内容，连接可以被复用
+     */
+    public static void consumeQuietly(final HttpResponse response) {
+        if (response == null || response.getEntity() == null) return;
+        try {
+            response.getEntity().consumeContent();
+        } catch (Throwable e) {
+        }
+    }
+
     /**
      * OthreUtils.java
      * 从响应中获取文件名
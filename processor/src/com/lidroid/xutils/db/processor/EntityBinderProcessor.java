@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lidroid.xutils.db.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates "entityClassName$$EntityBinder" (a com.lidroid.xutils.db.table.EntityBinder) for the classes
+ * annotated with @Table, or declaring fields annotated with @Id, @Column, @Foreign or @Finder.
+ * <p/>
+ * The binder accesses the non private fields directly, the private ones by their get/set methods
+ * (named as ColumnUtils looks them up). The other fields are left to reflection.
+ * <p/>
+ * Usage: javac -processorpath xutils-processor.jar ..., or the apt/annotationProcessor configuration
+ * of the build, the processor is registered in META-INF/services.
+ */
+public class EntityBinderProcessor extends AbstractProcessor {
+
+    private static final String ANNOTATION_PACKAGE = "com.lidroid.xutils.db.annotation.";
+    private static final String BINDER_CLASS_SUFFIX = "$$EntityBinder";
+
+    private static final String[] ENTITY_ANNOTATIONS = {"Table", "Id", "Column", "Foreign", "Finder"};
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> result = new HashSet<String>();
+        for (String name : ENTITY_ANNOTATIONS) {
+            result.add(ANNOTATION_PACKAGE + name);
+        }
+        return result;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        LinkedHashSet<TypeElement> entityTypes = new LinkedHashSet<TypeElement>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    entityTypes.add((TypeElement) element);
+                } else if (element.getKind() == ElementKind.FIELD) {
+                    entityTypes.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+        for (TypeElement entityType : entityTypes) {
+            try {
+                writeBinder(entityType);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "can not write the binder: " + e.getMessage(), entityType);
+            }
+        }
+        return false;
+    }
+
+    //*********************************************** fields ***********************************************
+
+    private static class FieldInfo {
+        String name;
+        TypeMirror type;
+        String getter; // expression reading the value of "e"
+        String setterPrefix; // followed by the value and setterSuffix
+        String setterSuffix;
+    }
+
+    private List<FieldInfo> getFields(TypeElement entityType) {
+        List<FieldInfo> result = new ArrayList<FieldInfo>();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(entityType.getEnclosedElements());
+        for (VariableElement field : ElementFilter.fieldsIn(entityType.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || hasAnnotation(field, "Transient")) {
+                continue;
+            }
+            FieldInfo info = new FieldInfo();
+            info.name = field.getSimpleName().toString();
+            info.type = field.asType();
+            if (!modifiers.contains(Modifier.PRIVATE)) {
+                info.getter = "e." + info.name;
+                info.setterPrefix = modifiers.contains(Modifier.FINAL) ? null : "e." + info.name + " = ";
+                info.setterSuffix = "";
+            } else {
+                String getMethod = findGetMethod(methods, info);
+                String setMethod = findSetMethod(methods, info);
+                info.getter = getMethod == null ? null : "e." + getMethod + "()";
+                info.setterPrefix = setMethod == null ? null : "e." + setMethod + "(";
+                info.setterSuffix = ")";
+            }
+            if (info.getter != null && info.setterPrefix != null) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    private static String capitalize(String name) {
+        return name.substring(0, 1).toUpperCase() + name.substring(1);
+    }
+
+    private String findGetMethod(List<ExecutableElement> methods, FieldInfo field) {
+        List<String> names = new ArrayList<String>(2);
+        if (field.type.getKind() == TypeKind.BOOLEAN) {
+            names.add(field.name.startsWith("is") ? field.name : "is" + capitalize(field.name));
+        }
+        names.add("get" + capitalize(field.name));
+        for (String name : names) {
+            for (ExecutableElement method : methods) {
+                if (method.getSimpleName().contentEquals(name) && method.getParameters().isEmpty()
+                        && !method.getModifiers().contains(Modifier.PRIVATE)
+                        && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.type)) {
+                    return name;
+                }
+            }
+        }
+        return null;
+    }
+
+    private String findSetMethod(List<ExecutableElement> methods, FieldInfo field) {
+        String name;
+        if (field.type.getKind() == TypeKind.BOOLEAN && field.name.startsWith("is") && field.name.length() > 2) {
+            name = "set" + capitalize(field.name.substring(2));
+        } else {
+            name = "set" + capitalize(field.name);
+        }
+        for (ExecutableElement method : methods) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1
+                    && !method.getModifiers().contains(Modifier.PRIVATE)
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), field.type)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasAnnotation(Element element, String simpleName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(ANNOTATION_PACKAGE + simpleName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasDefaultConstructor(TypeElement entityType) {
+        if (entityType.getModifiers().contains(Modifier.ABSTRACT)) return false;
+        if (entityType.getNestingKind() == NestingKind.MEMBER && !entityType.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entityType.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //*********************************************** types ***********************************************
+
+    /**
+     * @return the name of the column type of the fast path: Int, Long, Short, Byte, Char, Boolean, Float,
+     * Double, String, Blob, Date, SqlDate, or null.
+     */
+    private static String getFastType(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return "Int";
+            case LONG:
+                return "Long";
+            case SHORT:
+                return "Short";
+            case BYTE:
+                return "Byte";
+            case CHAR:
+                return "Char";
+            case BOOLEAN:
+                return "Boolean";
+            case FLOAT:
+                return "Float";
+            case DOUBLE:
+                return "Double";
+            case ARRAY:
+                return ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE ? "Blob" : null;
+            case DECLARED:
+                String name = type.toString();
+                if ("java.lang.Integer".equals(name)) return "Int";
+                if ("java.lang.Long".equals(name)) return "Long";
+                if ("java.lang.Short".equals(name)) return "Short";
+                if ("java.lang.Byte".equals(name)) return "Byte";
+                if ("java.lang.Character".equals(name)) return "Char";
+                if ("java.lang.Boolean".equals(name)) return "Boolean";
+                if ("java.lang.Float".equals(name)) return "Float";
+                if ("java.lang.Double".equals(name)) return "Double";
+                if ("java.lang.String".equals(name)) return "String";
+                if ("java.util.Date".equals(name)) return "Date";
+                if ("java.sql.Date".equals(name)) return "SqlDate";
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    // the same values as the ColumnConverters
+    private static String readExpression(String fastType) {
+        if ("Int".equals(fastType)) return "cursor.getInt(index)";
+        if ("Long".equals(fastType)) return "cursor.getLong(index)";
+        if ("Short".equals(fastType)) return "cursor.getShort(index)";
+        if ("Byte".equals(fastType)) return "(byte) cursor.getInt(index)";
+        if ("Char".equals(fastType)) return "(char) cursor.getInt(index)";
+        if ("Boolean".equals(fastType)) return "cursor.getInt(index) == 1";
+        if ("Float".equals(fastType)) return "cursor.getFloat(index)";
+        if ("Double".equals(fastType)) return "cursor.getDouble(index)";
+        if ("String".equals(fastType)) return "cursor.getString(index)";
+        if ("Blob".equals(fastType)) return "cursor.getBlob(index)";
+        if ("Date".equals(fastType)) return "new java.util.Date(cursor.getLong(index))";
+        if ("SqlDate".equals(fastType)) return "new java.sql.Date(cursor.getLong(index))";
+        return null;
+    }
+
+    private static String bindStatement(String fastType, String value) {
+        if ("Boolean".equals(fastType)) return "statement.bindLong(index, " + value + " ? 1 : 0);";
+        if ("Float".equals(fastType) || "Double".equals(fastType)) return "statement.bindDouble(index, " + value + ");";
+        if ("String".equals(fastType)) return "statement.bindString(index, " + value + ");";
+        if ("Blob".equals(fastType)) return "statement.bindBlob(index, " + value + ");";
+        if ("Date".equals(fastType) || "SqlDate".equals(fastType)) return "statement.bindLong(index, " + value + ".getTime());";
+        return "statement.bindLong(index, " + value + ");";
+    }
+
+    private String castType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) type).getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    //*********************************************** source ***********************************************
+
+    private void writeBinder(TypeElement entityType) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(entityType).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(entityType).toString();
+        String binderName = (packageName.length() > 0 ? binaryName.substring(packageName.length() + 1) : binaryName)
+                + BINDER_CLASS_SUFFIX;
+        String entityName = processingEnv.getTypeUtils().erasure(entityType.asType()).toString();
+        List<FieldInfo> fields = getFields(entityType);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by EntityBinderProcessor, do not edit.\n");
+        if (packageName.length() > 0) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        sb.append("public final class ").append(binderName)
+                .append(" extends com.lidroid.xutils.db.table.EntityBinder<").append(entityName).append("> {\n\n");
+
+        sb.append("    private static final String[] FIELD_NAMES = {");
+        for (int i = 0; i < fields.size(); i++) {
+            sb.append(i > 0 ? ", " : "").append('"').append(fields.get(i).name).append('"');
+        }
+        sb.append("};\n\n");
+
+        sb.append("    @Override\n    public String[] getFieldNames() {\n        return FIELD_NAMES;\n    }\n\n");
+
+        sb.append("    @Override\n    public ").append(entityName).append(" newInstance() {\n");
+        sb.append("        return ").append(hasDefaultConstructor(entityType) ? "new " + entityName + "()" : "null").append(";\n    }\n\n");
+
+        sb.append("    @Override\n    public Object getFieldValue(").append(entityName).append(" e, int fieldIndex) {\n");
+        sb.append("        switch (fieldIndex) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            sb.append("            case ").append(i).append(":\n                return ").append(fields.get(i).getter).append(";\n");
+        }
+        sb.append("            default:\n                throw new IllegalArgumentException(\"fieldIndex: \" + fieldIndex);\n");
+        sb.append("        }\n    }\n\n");
+
+        sb.append("    @Override\n    public void setFieldValue(").append(entityName).append(" e, int fieldIndex, Object value) {\n");
+        sb.append("        switch (fieldIndex) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            FieldInfo field = fields.get(i);
+            sb.append("            case ").append(i).append(":\n                ").append(field.setterPrefix)
+                    .append("(").append(castType(field.type)).append(") value").append(field.setterSuffix).append(";\n");
+            sb.append("                break;\n");
+        }
+        sb.append("            default:\n                throw new IllegalArgumentException(\"fieldIndex: \" + fieldIndex);\n");
+        sb.append("        }\n    }\n\n");
+
+        sb.append("    @Override\n    public boolean readColumn(").append(entityName)
+                .append(" e, int fieldIndex, android.database.Cursor cursor, int index) {\n");
+        sb.append("        if (cursor.isNull(index)) return false;\n");
+        sb.append("        switch (fieldIndex) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            FieldInfo field = fields.get(i);
+            String fastType = getFastType(field.type);
+            if (fastType == null) continue;
+            sb.append("            case ").append(i).append(":\n                ").append(field.setterPrefix)
+                    .append(readExpression(fastType)).append(field.setterSuffix).append(";\n");
+            sb.append("                return true;\n");
+        }
+        sb.append("            default:\n                return false;\n");
+        sb.append("        }\n    }\n\n");
+
+        sb.append("    @Override\n    public boolean bindColumn(").append(entityName)
+                .append(" e, int fieldIndex, android.database.sqlite.SQLiteStatement statement, int index) {\n");
+        sb.append("        switch (fieldIndex) {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            FieldInfo field = fields.get(i);
+            String fastType = getFastType(field.type);
+            if (fastType == null) continue;
+            sb.append("            case ").append(i).append(": {\n");
+            if (field.type.getKind().isPrimitive()) {
+                sb.append("                ").append(bindStatement(fastType, field.getter)).append("\n");
+            } else {
+                sb.append("                ").append(castType(field.type)).append(" value = ").append(field.getter).append(";\n");
+                sb.append("                if (value == null) return false;\n");
+                sb.append("                ").append(bindStatement(fastType, "value")).append("\n");
+            }
+            sb.append("                return true;\n            }\n");
+        }
+        sb.append("            default:\n                return false;\n");
+        sb.append("        }\n    }\n");
+        sb.append("}\n");
+
+        String qualifiedBinderName = packageName.length() > 0 ? packageName + "." + binderName : binderName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedBinderName, entityType);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
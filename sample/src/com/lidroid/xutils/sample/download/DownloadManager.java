@@ -220,11 +220,8 @@ public class DownloadManager {
             }
             downloadInfo.setFileLength(total);
             downloadInfo.setProgress(current);
-            try {
-                db.saveOrUpdate(downloadInfo);
-            } catch (DbException e) {
-                LogUtils.e(e.getMessage(), e);
-            }
+            // the progress is written often, committed in batches by the write queue
+            db.saveOrUpdateAsync(downloadInfo);
             if (baseCallBack != null) {
                 baseCallBack.onLoading(total, current, isUploading);
             }